@@ -0,0 +1,112 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Per-client admission control for the forecast and search endpoints. Each client, identified by its API key header
+ * when the key is one of the configured {@code api-keys} or else by its IP address, gets its own {@link TokenBucket}.
+ * Unknown keys share their address's bucket, so rotating made-up keys neither escapes the limit nor floods the bucket
+ * map. A request over the limit may wait for its next token if that is at most {@code max-wait} away and fewer than
+ * {@code max-waiting} requests are already waiting; otherwise it is answered with 429 and a {@code Retry-After}
+ * header, so a noisy client cannot pile up servlet threads.
+ * <p>
+ * The address is {@link HttpServletRequest#getRemoteAddr()}. Behind a reverse proxy or load balancer that is the
+ * proxy's address, shared by every client, unless {@code server.forward-headers-strategy} is set so that it is taken
+ * from {@code X-Forwarded-For}.
+ */
+@Component
+public class ClientRateLimitInterceptor implements HandlerInterceptor {
+    @Autowired
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private WeatherMetrics metrics = new WeatherMetrics();
+
+    private final double requestsPerSecond;
+    private final int burst;
+    private final long maxWaitNanos;
+    private final String apiKeyHeader;
+    private final Set<String> apiKeys;
+    private final Semaphore waiting;
+    private final Cache<String, TokenBucket> buckets;
+
+    public ClientRateLimitInterceptor(@Value("${weather.inbound.rate-limit.requests-per-second:5}") double requestsPerSecond,
+                                      @Value("${weather.inbound.rate-limit.burst:20}") int burst,
+                                      @Value("${weather.inbound.rate-limit.max-wait:250ms}") Duration maxWait,
+                                      @Value("${weather.inbound.rate-limit.max-waiting:50}") int maxWaiting,
+                                      @Value("${weather.inbound.rate-limit.max-clients:100000}") long maxClients,
+                                      @Value("${weather.inbound.rate-limit.api-key-header:X-API-Key}") String apiKeyHeader,
+                                      @Value("${weather.inbound.rate-limit.api-keys:}") String[] apiKeys) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.apiKeyHeader = apiKeyHeader;
+        this.apiKeys = Arrays.stream(apiKeys).map(String::trim).filter(key -> !key.isEmpty())
+                .collect(Collectors.toSet());
+        this.waiting = new Semaphore(maxWaiting);
+        // An evicted client starts again with a full bucket, so idle clients can be dropped once they would be refilled
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // Async dispatches of an admitted request are not counted again
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        TokenBucket bucket = buckets.get(clientId(request), client -> new TokenBucket(requestsPerSecond, burst));
+        long wait = bucket.tryReserve(0);
+        if (wait == 0) {
+            return true;
+        }
+        if (waiting.tryAcquire()) {
+            try {
+                wait = bucket.tryReserve(maxWaitNanos);
+                if (wait >= 0) {
+                    metrics.inboundRateLimited("delayed");
+                    LockSupport.parkNanos(wait);
+                    return true;
+                }
+            } finally {
+                waiting.release();
+            }
+        }
+        metrics.inboundRateLimited("rejected");
+        long retryAfterSeconds = Math.max(1, (-wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse("Too many requests, retry after " + retryAfterSeconds + "s."));
+        return false;
+    }
+
+    private String clientId(HttpServletRequest request) {
+        String apiKey = request.getHeader(apiKeyHeader);
+        return apiKey != null && apiKeys.contains(apiKey) ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+    }
+}
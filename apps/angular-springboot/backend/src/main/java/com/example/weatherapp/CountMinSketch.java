@@ -0,0 +1,63 @@
+package com.example.weatherapp;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate request counts in fixed memory: four rows of counters, where the smallest of a key's counters is its
+ * estimate. Estimates never undercount, and overcount only through collisions. All counters are halved after
+ * {@code 10 * width} additions so that the counts follow recent popularity.
+ * <p>
+ * The rows are indexed by {@code h1 + row * h2}, both halves of the key's mixed 64-bit {@link ForecastKey#hash64()};
+ * keys that only share a 32-bit {@code hashCode} then still collide in a row only by chance.
+ */
+final class CountMinSketch {
+    private static final int DEPTH = 4;
+
+    private final AtomicIntegerArray counters;
+    private final int mask;
+    private final long resetAfter;
+    private final AtomicLong additions = new AtomicLong();
+
+    CountMinSketch(int width) {
+        int rowWidth = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.counters = new AtomicIntegerArray(DEPTH * rowWidth);
+        this.mask = rowWidth - 1;
+        this.resetAfter = 10L * rowWidth;
+    }
+
+    /** Counts one occurrence of the key and returns its new estimate. */
+    int add(ForecastKey key) {
+        long hash = key.hash64();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(hash, row)));
+        }
+        if (additions.incrementAndGet() % resetAfter == 0) {
+            halve();
+        }
+        return estimate;
+    }
+
+    int estimate(ForecastKey key) {
+        long hash = key.hash64();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    private int index(long hash, int row) {
+        // An odd second hash walks every column of the power-of-two row
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+
+    private void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, count -> count >>> 1);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.DailyForecast;
+import com.example.weatherapp.model.WeeklyForecastResponse;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A daily forecast as kept in the forecast cache: one primitive column per variable in canonical units (Celsius,
+ * percent), and the first date instead of one date string per day. Responses are built from it in the requested unit.
+ */
+public final class DailySeries {
+    private final double latitude;
+    private final double longitude;
+    private final long startEpochDay;
+    private final float[] maxTemperatures;
+    private final float[] minTemperatures;
+    private final float[] precipitationChances;
+    private final byte[] weatherCodes;
+
+    DailySeries(double latitude, double longitude, LocalDate start, float[] maxTemperatures, float[] minTemperatures,
+                float[] precipitationChances, byte[] weatherCodes) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.startEpochDay = start == null ? 0 : start.toEpochDay();
+        this.maxTemperatures = maxTemperatures;
+        this.minTemperatures = minTemperatures;
+        this.precipitationChances = precipitationChances;
+        this.weatherCodes = weatherCodes;
+    }
+
+    public int size() {
+        return weatherCodes.length;
+    }
+
+    public double getLatitude() { return latitude; }
+
+    public double getLongitude() { return longitude; }
+
+    public LocalDate day(int index) {
+        return LocalDate.ofEpochDay(startEpochDay + index);
+    }
+
+    public WeeklyForecastResponse toResponse(TemperatureUnit unit) {
+        List<DailyForecast> days = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            DailyForecast day = new DailyForecast();
+            day.setDay(day(i).toString());
+            day.setWeatherCode(weatherCodes[i]);
+            DailyForecast.Temperature temperature = new DailyForecast.Temperature();
+            temperature.setMax(unit.fromCelsius(maxTemperatures[i]));
+            temperature.setMin(unit.fromCelsius(minTemperatures[i]));
+            day.setTemperature(temperature);
+            day.setPrecipitationChance(ForecastValues.round(precipitationChances[i]));
+            days.add(day);
+        }
+        WeeklyForecastResponse response = new WeeklyForecastResponse();
+        response.setLatitude(latitude);
+        response.setLongitude(longitude);
+        response.setUnits(unit.label());
+        response.setForecast(days);
+        return response;
+    }
+
+    /** Retained size: object headers and fields plus 13 bytes per day. */
+    int estimatedBytes() {
+        return 128 + size() * (3 * Float.BYTES + 1);
+    }
+
+    /** Size of the binary form written by {@link #writeTo}. */
+    int encodedBytes() {
+        return 2 * Double.BYTES + Long.BYTES + Integer.BYTES + size() * (3 * Float.BYTES + 1);
+    }
+
+    /** Writes the binary form kept by {@link ForecastStore}. */
+    void writeTo(ByteBuffer out) {
+        out.putDouble(latitude).putDouble(longitude).putLong(startEpochDay).putInt(size());
+        for (int i = 0; i < size(); i++) {
+            out.putFloat(maxTemperatures[i]).putFloat(minTemperatures[i]);
+            out.putFloat(precipitationChances[i]).put(weatherCodes[i]);
+        }
+    }
+
+    static DailySeries readFrom(ByteBuffer in) {
+        double latitude = in.getDouble();
+        double longitude = in.getDouble();
+        LocalDate start = LocalDate.ofEpochDay(in.getLong());
+        int size = in.getInt();
+        float[] max = new float[size];
+        float[] min = new float[size];
+        float[] precipitation = new float[size];
+        byte[] codes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            max[i] = in.getFloat();
+            min[i] = in.getFloat();
+            precipitation[i] = in.getFloat();
+            codes[i] = in.get();
+        }
+        return new DailySeries(latitude, longitude, start, max, min, precipitation, codes);
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.weatherapp;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache of upstream forecasts keyed by {@link ForecastKey}.
+ * <p>
+ * Entries are bounded by count and by estimated size, become stale after a TTL matching the provider's model-run
+ * cadence and are evicted by Caffeine's W-TinyLFU policy. Concurrent misses for the same key share a single upstream
+ * load. A stale entry is still returned immediately while one background refresh replaces it; if refreshes keep
+ * failing (for example while the circuit breaker is open) it is served for a further grace window before it expires.
+ * <p>
+ * With a {@link ForecastStore} configured, loaded forecasts are also written to disk and read back at startup with
+ * their original age, so a restarted instance starts warm.
+ */
+@Component
+public class ForecastCache {
+    static final double DEFAULT_GRID_DEGREES = 0.01;
+    static final Duration DEFAULT_TTL = Duration.ofHours(1);
+    static final Duration DEFAULT_STALE_GRACE = Duration.ofHours(3);
+    static final long DEFAULT_MAX_ENTRIES = 10_000;
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final int BASE_BYTES = 256;
+    // Allowance per row for the serialized JSON and gzip bodies kept alongside the series, in up to two units. Only
+    // the default hourly response is kept serialized; longer horizons are streamed from the series.
+    private static final int SERIALIZED_DAY_BYTES = 320;
+    private static final int SERIALIZED_HOUR_BYTES = 112;
+    private static final int REFRESH_QUEUE_CAPACITY = 1_000;
+
+    private final double gridDegrees;
+    private final long ttlNanos;
+    private final long lifetimeNanos;
+    private final Ticker ticker;
+    private final Executor refreshExecutor;
+    private final AsyncCache<ForecastKey, CachedForecast> cache;
+    private final Set<ForecastKey> refreshing = ConcurrentHashMap.newKeySet();
+    // Seeded from the clock so that versions, and the ETags built from them, are not reused after a restart
+    private final AtomicLong versions = new AtomicLong(System.currentTimeMillis() << 20);
+
+    @Autowired
+    private ForecastStore store = new ForecastStore();
+
+    public ForecastCache() {
+        this(DEFAULT_GRID_DEGREES, DEFAULT_TTL, DEFAULT_STALE_GRACE, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, 1);
+    }
+
+    @Autowired
+    public ForecastCache(@Value("${weather.cache.grid-degrees:0.01}") double gridDegrees,
+                         @Value("${weather.cache.ttl:1h}") Duration ttl,
+                         @Value("${weather.cache.stale-grace:3h}") Duration staleGrace,
+                         @Value("${weather.cache.max-entries:10000}") long maxEntries,
+                         @Value("${weather.cache.max-bytes:67108864}") long maxBytes,
+                         @Value("${weather.cache.refresh-threads:2}") int refreshThreads) {
+        this(gridDegrees, ttl, staleGrace, maxEntries, maxBytes, Ticker.systemTicker(), newRefreshExecutor(refreshThreads));
+    }
+
+    ForecastCache(double gridDegrees, Duration ttl, Duration staleGrace, long maxEntries, long maxBytes,
+                  Ticker ticker, Executor refreshExecutor) {
+        this.gridDegrees = gridDegrees;
+        this.ttlNanos = ttl.toNanos();
+        this.lifetimeNanos = ttl.plus(staleGrace).toNanos();
+        this.ticker = ticker;
+        this.refreshExecutor = refreshExecutor;
+        // Every entry weighs at least maxBytes / maxEntries, so a single weight bound enforces both limits
+        long minWeight = Math.max(1, maxBytes / Math.max(1, maxEntries));
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<ForecastKey, CachedForecast>weigher((key, entry) -> (int) Math.min(Integer.MAX_VALUE, Math.max(minWeight, estimateBytes(entry.value))))
+                .expireAfter(new Expiry<ForecastKey, CachedForecast>() {
+                    // Measured from the load rather than the insert, so forecasts restored from disk keep their age
+                    @Override
+                    public long expireAfterCreate(ForecastKey key, CachedForecast entry, long currentTime) {
+                        return Math.max(0, lifetimeNanos - (currentTime - entry.loadedAt));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ForecastKey key, CachedForecast entry, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(ForecastKey key, CachedForecast entry, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .recordStats()
+                .buildAsync();
+    }
+
+    private static ExecutorService newRefreshExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "forecast-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /** Fills the cache from the disk store, if one is configured, before requests are served. */
+    @PostConstruct
+    public void restore() throws IOException {
+        long now = ticker.read();
+        long nowMillis = System.currentTimeMillis();
+        store.open(Duration.ofNanos(lifetimeNanos), stored -> {
+            long age = TimeUnit.MILLISECONDS.toNanos(Math.max(0, nowMillis - stored.loadedAtMillis));
+            ForecastKey key = key(stored.kind, stored.latitude, stored.longitude);
+            cache.put(key, CompletableFuture.completedFuture(new CachedForecast(stored.value, now - age, stored.version)));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refreshExecutor instanceof ExecutorService) {
+            ((ExecutorService) refreshExecutor).shutdownNow();
+        }
+    }
+
+    public ForecastKey key(ForecastKey.Kind kind, double latitude, double longitude) {
+        return new ForecastKey(kind, latitude, longitude, gridDegrees);
+    }
+
+    /**
+     * Returns the cached forecast for the key, running the loader on the calling thread on a miss.
+     * Callers that miss while another thread is loading the same key wait for that load instead of issuing their own.
+     * A {@code null} result is handed to all waiters but is not cached. A stale hit is returned as is and triggers
+     * at most one background refresh for the key.
+     */
+    public <T> T get(ForecastKey key, Supplier<T> loader) {
+        Entry<T> entry = getEntry(key, loader);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /** Like {@link #get}, but also returns the entry's version and remaining freshness. */
+    public <T> Entry<T> getEntry(ForecastKey key, Supplier<T> loader) {
+        CompletableFuture<CachedForecast> pending = new CompletableFuture<>();
+        CompletableFuture<CachedForecast> future = cache.get(key, (k, executor) -> pending);
+        if (future == pending) {
+            try {
+                pending.complete(loaded(key, loader.get()));
+            } catch (RuntimeException e) {
+                pending.completeExceptionally(e);
+            }
+        }
+        CachedForecast entry;
+        try {
+            entry = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return entry(key, entry, () -> CompletableFuture.supplyAsync(loader, refreshExecutor));
+    }
+
+    /**
+     * Bulk variant of {@link #get}: keys that are cached or already loading are served from the cache, and all the
+     * remaining keys are passed to one {@code loader} call on the calling thread. Concurrent callers for any of those
+     * keys wait for this load, as with {@link #get}. Keys missing from the loader's result map to {@code null} and are
+     * not cached. Stale hits are refreshed in the background one key at a time.
+     */
+    public <T> Map<ForecastKey, T> getAll(Collection<ForecastKey> keys, Function<List<ForecastKey>, Map<ForecastKey, T>> loader) {
+        Map<ForecastKey, CompletableFuture<CachedForecast>> futures = new LinkedHashMap<>();
+        Map<ForecastKey, CompletableFuture<CachedForecast>> owned = new LinkedHashMap<>();
+        for (ForecastKey key : keys) {
+            if (futures.containsKey(key)) {
+                continue;
+            }
+            CompletableFuture<CachedForecast> pending = new CompletableFuture<>();
+            CompletableFuture<CachedForecast> future = cache.get(key, (k, executor) -> pending);
+            futures.put(key, future);
+            if (future == pending) {
+                owned.put(key, pending);
+            }
+        }
+        if (!owned.isEmpty()) {
+            try {
+                Map<ForecastKey, T> loaded = loader.apply(new ArrayList<>(owned.keySet()));
+                owned.forEach((key, pending) -> pending.complete(loaded(key, loaded.get(key))));
+            } catch (RuntimeException e) {
+                owned.values().forEach(pending -> pending.completeExceptionally(e));
+                throw e;
+            }
+        }
+        Map<ForecastKey, T> result = new LinkedHashMap<>();
+        futures.forEach((key, future) -> {
+            CachedForecast entry;
+            try {
+                entry = future.join();
+            } catch (CompletionException e) {
+                // Another caller's load for this key failed; report it as unavailable rather than failing the batch
+                entry = null;
+            }
+            Entry<T> cached = entry(key, entry,
+                    () -> CompletableFuture.supplyAsync(() -> loader.apply(List.of(key)).get(key), refreshExecutor));
+            result.put(key, cached == null ? null : cached.getValue());
+        });
+        return result;
+    }
+
+    /**
+     * Non-blocking variant of {@link #get}: on a miss the loader's future is cached immediately, so concurrent callers
+     * share it and no thread is parked while the upstream call is in flight.
+     */
+    public <T> CompletableFuture<T> getAsync(ForecastKey key, Supplier<CompletableFuture<T>> loader) {
+        return this.<T>getEntryAsync(key, loader).thenApply(entry -> entry == null ? null : entry.getValue());
+    }
+
+    /** Like {@link #getAsync}, but also returns the entry's version and remaining freshness. */
+    public <T> CompletableFuture<Entry<T>> getEntryAsync(ForecastKey key, Supplier<CompletableFuture<T>> loader) {
+        return cache.get(key, (k, executor) -> loader.get().thenApply(value -> loaded(key, value)))
+                .thenApply(entry -> entry(key, entry, loader));
+    }
+
+    private <T> Entry<T> entry(ForecastKey key, CachedForecast entry, Supplier<? extends CompletableFuture<?>> reload) {
+        if (entry == null) {
+            return null;
+        }
+        long age = ticker.read() - entry.loadedAt;
+        if (age >= ttlNanos) {
+            refreshAsync(key, reload);
+        }
+        return new Entry<>(entry, TimeUnit.NANOSECONDS.toSeconds(Math.max(0, ttlNanos - age)));
+    }
+
+    /**
+     * Starts a background load of the key when it is not cached or becomes stale within {@code lead}, so that requests
+     * keep hitting a fresh entry. Does nothing while the key is already loading. Returns whether a load was started.
+     */
+    public boolean refreshAhead(ForecastKey key, Duration lead, Supplier<? extends CompletableFuture<?>> loader) {
+        CompletableFuture<CachedForecast> future = cache.getIfPresent(key);
+        if (future != null) {
+            if (!future.isDone()) {
+                return false;
+            }
+            CachedForecast entry = future.isCompletedExceptionally() ? null : future.join();
+            if (entry != null && ticker.read() - entry.loadedAt < ttlNanos - lead.toNanos()) {
+                return false;
+            }
+        }
+        return refreshAsync(key, loader);
+    }
+
+    private boolean refreshAsync(ForecastKey key, Supplier<? extends CompletableFuture<?>> reload) {
+        if (!refreshing.add(key)) {
+            return false;
+        }
+        CompletableFuture<?> refresh;
+        try {
+            refresh = reload.get();
+        } catch (RuntimeException e) {
+            refreshing.remove(key);
+            return false;
+        }
+        refresh.whenComplete((value, error) -> {
+            // On failure the stale entry keeps being served until it leaves the grace window
+            if (value != null) {
+                cache.put(key, CompletableFuture.completedFuture(loaded(key, value)));
+            }
+            refreshing.remove(key);
+        });
+        return true;
+    }
+
+    /** Wraps a forecast fresh from upstream and writes it through to the disk store. */
+    private CachedForecast loaded(ForecastKey key, Object value) {
+        if (value == null) {
+            return null;
+        }
+        CachedForecast entry = new CachedForecast(value, ticker.read(), versions.incrementAndGet());
+        store.append(key, value, System.currentTimeMillis(), entry.version);
+        return entry;
+    }
+
+    /** Hit, miss, load and eviction counters since startup. */
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    /** The underlying Caffeine cache, for metrics binding. */
+    Cache<ForecastKey, ?> caffeine() {
+        return cache.synchronous();
+    }
+
+    void setStore(ForecastStore store) {
+        this.store = store;
+    }
+
+    public long estimatedSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    /** Rough retained size of a cached forecast, used to bound the cache by memory. */
+    static int estimateBytes(Object value) {
+        if (value instanceof DailySeries) {
+            DailySeries series = (DailySeries) value;
+            return BASE_BYTES + series.estimatedBytes() + series.size() * SERIALIZED_DAY_BYTES;
+        }
+        if (value instanceof HourlySeries) {
+            HourlySeries series = (HourlySeries) value;
+            int serializedRows = Math.min(series.size(), WeatherService.HOURLY_ROWS);
+            return BASE_BYTES + series.estimatedBytes() + serializedRows * SERIALIZED_HOUR_BYTES;
+        }
+        return BASE_BYTES;
+    }
+
+    /** A cached forecast with what HTTP validators and freshness headers need. */
+    public static final class Entry<T> {
+        private final CachedForecast source;
+        private final long maxAgeSeconds;
+
+        private Entry(CachedForecast source, long maxAgeSeconds) {
+            this.source = source;
+            this.maxAgeSeconds = maxAgeSeconds;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T getValue() { return (T) source.value; }
+
+        /** Strong entity tag; changes whenever the forecast is reloaded from upstream. */
+        public String getETag() { return "\"" + Long.toHexString(source.version) + "\""; }
+
+        /** Entity tag of another representation of the forecast served at the same URL, such as NDJSON. */
+        public String getETag(String representation) {
+            return "\"" + Long.toHexString(source.version) + "-" + representation + "\"";
+        }
+
+        /**
+         * A response body built from this forecast, such as one unit's JSON, serialized on first use of the
+         * {@code variant} and then kept with the cache entry until it is reloaded.
+         */
+        public SerializedResponse serialized(String variant, Function<? super T, SerializedResponse> serializer) {
+            return source.serialized.computeIfAbsent(variant, v -> serializer.apply(getValue()));
+        }
+
+        /** Seconds until the forecast becomes stale, 0 when it is already being served stale. */
+        public long getMaxAgeSeconds() { return maxAgeSeconds; }
+    }
+
+    private static final class CachedForecast {
+        private final Object value;
+        private final long loadedAt;
+        private final long version;
+        private final Map<String, SerializedResponse> serialized = new ConcurrentHashMap<>(4);
+
+        private CachedForecast(Object value, long loadedAt, long version) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.version = version;
+        }
+    }
+}
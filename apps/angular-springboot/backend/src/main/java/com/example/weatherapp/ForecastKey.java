@@ -0,0 +1,74 @@
+package com.example.weatherapp;
+
+import java.util.Objects;
+
+/**
+ * Identifies one upstream forecast: the kind of forecast and the coordinates snapped to the cache grid. Forecasts are
+ * cached in Celsius and converted per response, so the units are not part of the key. Coordinates are kept as integer
+ * grid cells so that nearby requests compare equal without floating point surprises.
+ */
+public final class ForecastKey {
+    public enum Kind { WEEKLY, HOURLY }
+
+    private final Kind kind;
+    private final long latitudeCell;
+    private final long longitudeCell;
+    private final double gridDegrees;
+
+    public ForecastKey(Kind kind, double latitude, double longitude, double gridDegrees) {
+        this.kind = kind;
+        this.gridDegrees = gridDegrees;
+        this.latitudeCell = Math.round(latitude / gridDegrees);
+        this.longitudeCell = Math.round(longitude / gridDegrees);
+    }
+
+    public Kind getKind() { return kind; }
+
+    /** Latitude of the grid cell centre, used for the upstream request. */
+    public double getLatitude() { return toDegrees(latitudeCell); }
+
+    /** Longitude of the grid cell centre, used for the upstream request. */
+    public double getLongitude() { return toDegrees(longitudeCell); }
+
+    private double toDegrees(long cell) {
+        // Round to 6 decimals so the upstream URL does not carry binary noise like 52.519999999
+        return Math.round(cell * gridDegrees * 1_000_000d) / 1_000_000d;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ForecastKey)) return false;
+        ForecastKey other = (ForecastKey) o;
+        return kind == other.kind
+                && latitudeCell == other.latitudeCell
+                && longitudeCell == other.longitudeCell
+                && Double.compare(gridDegrees, other.gridDegrees) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, latitudeCell, longitudeCell, gridDegrees);
+    }
+
+    /**
+     * A 64-bit hash of the kind and grid cells with every input bit mixed into every output bit, for structures such as
+     * {@link CountMinSketch} that derive several indexes from one key. {@link #hashCode()} is a 31-multiplier sum,
+     * under which cells like {@code (lat + 1, lon - 31)} and {@code (lat, lon)} are equal.
+     */
+    long hash64() {
+        return mix(mix(mix(kind.ordinal()) + latitudeCell) + longitudeCell);
+    }
+
+    /** The SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        return kind + "[" + getLatitude() + "," + getLongitude() + "]";
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.weatherapp;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes popular forecasts before they go stale, so that users of popular places never pay for an upstream call.
+ * <p>
+ * Forecast requests are counted per cache key in a {@link CountMinSketch}; keys whose estimate reaches the current
+ * top {@code hot-locations} are tracked as candidates. Every run refreshes the hottest keys first and then walks the
+ * location catalogue (weekly forecasts, cities first) from where the previous run stopped. Refreshes are started at
+ * most {@code max-requests-per-second}, with jittered spacing and jittered lead times so that entries loaded together
+ * do not expire, and reload, together.
+ * <p>
+ * Runs have their own single thread, which schedules each refresh after the previous one instead of sleeping
+ * in between, so a run that spreads its budget over the whole interval never holds a shared scheduler thread.
+ */
+@Component
+public class ForecastPrewarmer {
+    @Autowired
+    private WeatherService weatherService;
+
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private WeatherMetrics metrics = new WeatherMetrics();
+
+    @Value("${weather.prewarm.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${weather.prewarm.initial-delay:1m}")
+    private Duration initialDelay = Duration.ofMinutes(1);
+
+    @Value("${weather.prewarm.interval:1m}")
+    private Duration interval = Duration.ofMinutes(1);
+
+    @Value("${weather.prewarm.lead:10m}")
+    private Duration lead = Duration.ofMinutes(10);
+
+    @Value("${weather.prewarm.jitter:0.5}")
+    private double jitter = 0.5;
+
+    @Value("${weather.prewarm.max-requests-per-second:2}")
+    private double maxRequestsPerSecond = 2;
+
+    @Value("${weather.prewarm.hot-locations:200}")
+    private int hotLocations = 200;
+
+    @Value("${weather.prewarm.max-locations:1000}")
+    private int maxLocations = 1000;
+
+    private final CountMinSketch sketch = new CountMinSketch(16_384);
+    private final Map<ForecastKey, Boolean> candidates = new ConcurrentHashMap<>();
+    // Estimate of the least popular hot key at the last run; keys below it are not worth tracking
+    private volatile int admissionThreshold;
+    private int catalogueCursor;
+    private ScheduledExecutorService scheduler;
+
+    /** Counts a forecast request; called for every key a forecast endpoint serves. */
+    public void record(ForecastKey key) {
+        int estimate = sketch.add(key);
+        if (estimate >= admissionThreshold && candidates.size() < 4 * hotLocations) {
+            candidates.putIfAbsent(key, Boolean.TRUE);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "forecast-prewarm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            scheduler.schedule(this::run, initialDelay.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** One paced run; the next is scheduled {@code interval} after its last refresh has started. */
+    private void run() {
+        prewarm(Math.max(1, (long) (maxRequestsPerSecond * interval.getSeconds())))
+                .whenComplete((started, error) ->
+                        scheduler.schedule(this::run, interval.toNanos(), TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Starts up to {@code budget} refreshes on the prewarm thread, hottest keys first, spaced by the request rate.
+     * Completes with the number started.
+     */
+    CompletableFuture<Integer> prewarm(long budget) {
+        Run run = new Run(budget);
+        scheduler.execute(run::step);
+        return run.done;
+    }
+
+    /** The tracked keys ranked by estimated popularity; drops the candidates that fell out of the top. */
+    List<ForecastKey> hotKeys() {
+        List<ForecastKey> ranked = new ArrayList<>(candidates.keySet());
+        Map<ForecastKey, Integer> estimates = new HashMap<>();
+        ranked.forEach(key -> estimates.put(key, sketch.estimate(key)));
+        ranked.sort(Comparator.comparing(estimates::get, Comparator.reverseOrder()));
+        if (ranked.size() > hotLocations) {
+            ranked.subList(hotLocations, ranked.size()).forEach(candidates::remove);
+            ranked = ranked.subList(0, hotLocations);
+            admissionThreshold = estimates.get(ranked.get(ranked.size() - 1));
+        } else {
+            admissionThreshold = 0;
+        }
+        return ranked;
+    }
+
+    private boolean refresh(ForecastKey key, String source) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Duration jitteredLead = Duration.ofNanos((long) (lead.toNanos() * (1 + jitter * random.nextDouble())));
+        if (!weatherService.refreshAhead(key, jitteredLead)) {
+            return false;
+        }
+        metrics.prewarmStarted(source);
+        return true;
+    }
+
+    private long jitteredSpacing() {
+        long spacing = (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond);
+        return (long) (spacing * (1 + jitter * (ThreadLocalRandom.current().nextDouble() - 0.5)));
+    }
+
+    /** A pass over the hot keys and then the catalogue, advanced one started refresh per step. */
+    private final class Run {
+        private final long budget;
+        private final CompletableFuture<Integer> done = new CompletableFuture<>();
+        private Iterator<ForecastKey> hot;
+        private LocationIndex locations;
+        private int catalogue;
+        private int scanned;
+        private int started;
+
+        Run(long budget) {
+            this.budget = budget;
+        }
+
+        void step() {
+            try {
+                if (hot == null) {
+                    hot = hotKeys().iterator();
+                    locations = locationService.dataset();
+                    catalogue = Math.min(maxLocations, locations.size());
+                }
+                while (started < budget && (hot.hasNext() || scanned < catalogue)) {
+                    boolean hotKey = hot.hasNext();
+                    if (refresh(hotKey ? hot.next() : nextCatalogueKey(), hotKey ? "hot" : "catalogue")
+                            && ++started < budget) {
+                        scheduler.schedule(this::step, jitteredSpacing(), TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                }
+                done.complete(started);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        }
+
+        private ForecastKey nextCatalogueKey() {
+            int ordinal = catalogueCursor % catalogue;
+            catalogueCursor = ordinal + 1;
+            scanned++;
+            return weatherService.weeklyKey(locations.latitude(ordinal), locations.longitude(ordinal));
+        }
+    }
+
+    void setWeatherService(WeatherService weatherService) {
+        this.weatherService = weatherService;
+    }
+
+    void setLocationService(LocationService locationService) {
+        this.locationService = locationService;
+    }
+
+    void setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    void setHotLocations(int hotLocations) {
+        this.hotLocations = hotLocations;
+    }
+
+    void setMaxLocations(int maxLocations) {
+        this.maxLocations = maxLocations;
+    }
+}
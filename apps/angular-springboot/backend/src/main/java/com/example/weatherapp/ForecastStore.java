@@ -0,0 +1,405 @@
+package com.example.weatherapp;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Optional disk tier under {@link ForecastCache}. Every forecast loaded from upstream is appended to a log together
+ * with its load time, and the log is replayed when the cache starts, so a restarted instance serves its popular
+ * locations from disk instead of stampeding Open-Meteo.
+ * <p>
+ * Layout: a header (magic, version) followed by records of (body length, CRC-32C of the body, body). A crash can only
+ * leave a partial record at the end of the log; replay stops at the first record that does not check out and cuts the
+ * file there, so everything written before it stays readable. Once the log outgrows {@code max-bytes} it is compacted
+ * into a new file holding the latest live record per key, which is synced and then moved into place atomically.
+ * <p>
+ * Appends only queue the encoded record; a single writer thread does the file I/O and the compaction, so a slow disk
+ * never holds up a cache load. While a key waits, a newer forecast for it replaces the queued one, and once
+ * {@code max-pending} keys wait, forecasts for further keys are dropped and counted: the store is a warm start, not a
+ * record of every load.
+ */
+@Component
+public class ForecastStore {
+    static final String FILE_NAME = "forecasts.log";
+    private static final int MAGIC = 0x57464331;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int KEY_BYTES = 1 + 2 * Double.BYTES;
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxPending;
+    private final LongSupplier clock;
+    private final boolean ownWriter;
+    private final AtomicLong writeErrors = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Encoded records waiting for the writer, latest per key; guarded by itself
+    private final Map<ForecastKey, ByteBuffer> pending = new LinkedHashMap<>();
+    private boolean flushQueued;
+    private volatile boolean accepting;
+    private Executor writer;
+    private ExecutorService writerThread;
+    private FileChannel channel;
+    private long size;
+    private long compactAt;
+    private long retentionMillis = Long.MAX_VALUE;
+    private volatile int restored;
+
+    /** A store that keeps nothing, used when no directory is configured. */
+    public ForecastStore() {
+        this(null, 0, 0, System::currentTimeMillis, null);
+    }
+
+    @Autowired
+    public ForecastStore(@Value("${weather.cache.disk.directory:}") String directory,
+                         @Value("${weather.cache.disk.max-bytes:67108864}") long maxBytes,
+                         @Value("${weather.cache.disk.max-pending:1024}") int maxPending) {
+        this(directory.isBlank() ? null : Paths.get(directory).resolve(FILE_NAME), maxBytes, maxPending,
+                System::currentTimeMillis, null);
+    }
+
+    /** A store whose writes run on {@code writer}, or on a thread of its own when {@code writer} is null. */
+    ForecastStore(Path file, long maxBytes, int maxPending, LongSupplier clock, Executor writer) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxPending = maxPending;
+        this.clock = clock;
+        this.ownWriter = writer == null;
+        this.writer = writer;
+        this.compactAt = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Opens the log, creating it if needed, and hands every intact record loaded within {@code retention} to
+     * {@code sink}, oldest first, so later records for a key replace earlier ones. Returns the number handed over.
+     */
+    synchronized int open(Duration retention, Consumer<Stored> sink) throws IOException {
+        if (!isEnabled() || channel != null) {
+            return 0;
+        }
+        retentionMillis = retention.toMillis();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = channel.size();
+        ByteBuffer log = length < HEADER_BYTES ? null : channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        if (log == null || log.getInt(0) != MAGIC || log.getInt(4) != VERSION) {
+            // Unreadable or written by another format version: it is only a cache, so start over
+            channel.truncate(0);
+            writeFully(channel.position(0), header());
+            size = HEADER_BYTES;
+            startWriter();
+            return 0;
+        }
+        long oldest = clock.getAsLong() - retentionMillis;
+        int[] count = new int[1];
+        size = scan(log, record -> {
+            Stored stored = decode(record);
+            if (stored != null && stored.loadedAtMillis >= oldest) {
+                sink.accept(stored);
+                count[0]++;
+            }
+        });
+        // Cut off a torn tail so that new records follow the last intact one
+        channel.truncate(size);
+        channel.position(size);
+        compactAt = Math.max(maxBytes, 2 * size);
+        restored = count[0];
+        startWriter();
+        return restored;
+    }
+
+    private void startWriter() {
+        if (ownWriter) {
+            writerThread = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "forecast-store-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer = writerThread;
+        }
+        accepting = true;
+    }
+
+    /**
+     * Queues a forecast loaded at {@code loadedAtMillis} for the writer and returns without touching the file. Write
+     * failures are counted and otherwise ignored: the in-memory cache does not depend on the store.
+     */
+    void append(ForecastKey key, Object value, long loadedAtMillis, long version) {
+        if (!accepting) {
+            return;
+        }
+        ByteBuffer record = encode(key, value, loadedAtMillis, version);
+        if (record == null) {
+            return;
+        }
+        synchronized (pending) {
+            if (pending.size() >= maxPending && !pending.containsKey(key)) {
+                dropped.incrementAndGet();
+                return;
+            }
+            pending.put(key, record);
+            if (flushQueued) {
+                return;
+            }
+            flushQueued = true;
+        }
+        try {
+            writer.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // Closing: close() writes whatever is still pending
+        }
+    }
+
+    /** Writes the queued records; runs on the writer. */
+    private void flush() {
+        List<ByteBuffer> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            flushQueued = false;
+        }
+        for (ByteBuffer record : batch) {
+            write(record);
+        }
+    }
+
+    private synchronized void write(ByteBuffer record) {
+        if (channel == null) {
+            return;
+        }
+        long start = size;
+        try {
+            writeFully(channel, record);
+            size += record.limit();
+            if (size > compactAt) {
+                compact();
+            }
+        } catch (IOException e) {
+            writeErrors.incrementAndGet();
+            try {
+                channel.truncate(start);
+                channel.position(start);
+                size = start;
+            } catch (IOException truncateFailed) {
+                // The tail may now be torn; stop writing so that replay still finds every record before it
+                closeQuietly();
+            }
+        }
+    }
+
+    /** Rewrites the log with the latest live record per key and moves it into place. */
+    private void compact() throws IOException {
+        ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        long oldest = clock.getAsLong() - retentionMillis;
+        Map<ByteBuffer, ByteBuffer> latest = new LinkedHashMap<>();
+        scan(log, record -> {
+            ByteBuffer key = keyOf(record);
+            latest.remove(key);
+            if (record.getLong(RECORD_HEADER_BYTES + key.limit()) >= oldest) {
+                latest.put(key, record);
+            }
+        });
+        Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, header());
+            for (ByteBuffer record : latest.values()) {
+                writeFully(out, record);
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+        channel.position(size);
+        // Leave room to grow when most of the log is live, instead of compacting on every append
+        compactAt = Math.max(maxBytes, 2 * size);
+    }
+
+    /** Stops accepting forecasts, writes those still queued and syncs the log. */
+    @PreDestroy
+    public void close() {
+        accepting = false;
+        if (writerThread != null) {
+            writerThread.shutdown();
+            try {
+                writerThread.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.force(true);
+            } catch (IOException e) {
+                writeErrors.incrementAndGet();
+            }
+            closeQuietly();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to protect: every record before the failure was already written
+        }
+        channel = null;
+    }
+
+    /** Current size of the log in bytes. */
+    public synchronized long sizeBytes() {
+        return channel == null ? 0 : size;
+    }
+
+    /** Forecasts restored by the last {@link #open}. */
+    public int restored() {
+        return restored;
+    }
+
+    public long writeErrors() {
+        return writeErrors.get();
+    }
+
+    /** Forecasts not written because {@code max-pending} other keys were already waiting for the writer. */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /** Passes each intact record, header included, to {@code visitor} and returns where the intact part ends. */
+    private static long scan(ByteBuffer log, Consumer<ByteBuffer> visitor) {
+        CRC32C crc = new CRC32C();
+        int position = HEADER_BYTES;
+        while (log.limit() - position >= RECORD_HEADER_BYTES) {
+            int length = log.getInt(position);
+            if (length <= 0 || length > log.limit() - position - RECORD_HEADER_BYTES) {
+                break;
+            }
+            int end = position + RECORD_HEADER_BYTES + length;
+            crc.reset();
+            crc.update(log.duplicate().position(position + RECORD_HEADER_BYTES).limit(end));
+            if ((int) crc.getValue() != log.getInt(position + 4)) {
+                break;
+            }
+            visitor.accept(log.duplicate().position(position).limit(end).slice());
+            position = end;
+        }
+        return position;
+    }
+
+    /*
+     * Record body: kind, latitude, longitude -- together the key -- then the load time in epoch milliseconds, the cache
+     * version and the series. Version 2 also stored units in the key; such logs are discarded on open.
+     */
+    private static ByteBuffer encode(ForecastKey key, Object value, long loadedAtMillis, long version) {
+        int valueBytes;
+        if (key.getKind() == ForecastKey.Kind.WEEKLY && value instanceof DailySeries) {
+            valueBytes = ((DailySeries) value).encodedBytes();
+        } else if (key.getKind() == ForecastKey.Kind.HOURLY && value instanceof HourlySeries) {
+            valueBytes = ((HourlySeries) value).encodedBytes();
+        } else {
+            return null;
+        }
+        int length = KEY_BYTES + 2 * Long.BYTES + valueBytes;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+        record.putInt(length).putInt(0);
+        record.put((byte) key.getKind().ordinal()).putDouble(key.getLatitude()).putDouble(key.getLongitude());
+        record.putLong(loadedAtMillis).putLong(version);
+        if (value instanceof DailySeries) {
+            ((DailySeries) value).writeTo(record);
+        } else {
+            ((HourlySeries) value).writeTo(record);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_BYTES, length);
+        record.putInt(4, (int) crc.getValue());
+        return record.flip();
+    }
+
+    /** Reads a record that passed its checksum; {@code null} if it still cannot be decoded. */
+    private static Stored decode(ByteBuffer record) {
+        try {
+            ByteBuffer body = record.duplicate().position(RECORD_HEADER_BYTES);
+            ForecastKey.Kind kind = ForecastKey.Kind.values()[body.get()];
+            double latitude = body.getDouble();
+            double longitude = body.getDouble();
+            long loadedAtMillis = body.getLong();
+            long version = body.getLong();
+            Object value = kind == ForecastKey.Kind.WEEKLY ? DailySeries.readFrom(body) : HourlySeries.readFrom(body);
+            return new Stored(kind, latitude, longitude, loadedAtMillis, version, value);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** The key part of a record body, as a buffer that compares by content. */
+    private static ByteBuffer keyOf(ByteBuffer record) {
+        return record.duplicate().position(RECORD_HEADER_BYTES).limit(RECORD_HEADER_BYTES + KEY_BYTES).slice();
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        ByteBuffer source = buffer.duplicate();
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    /** A forecast read back from the log. */
+    static final class Stored {
+        final ForecastKey.Kind kind;
+        final double latitude;
+        final double longitude;
+        final long loadedAtMillis;
+        final long version;
+        final Object value;
+
+        private Stored(ForecastKey.Kind kind, double latitude, double longitude, long loadedAtMillis, long version,
+                       Object value) {
+            this.kind = kind;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.loadedAtMillis = loadedAtMillis;
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
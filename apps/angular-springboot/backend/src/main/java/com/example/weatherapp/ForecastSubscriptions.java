@@ -0,0 +1,407 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Gauge;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent event subscriptions to forecasts. Subscribers are grouped into one topic per forecast cache key, so
+ * everybody watching the same grid cell shares it. Every poll interval each topic reads its forecast once from the
+ * {@link ForecastCache}, refreshing it ahead when it would go stale before the next poll, and sends an event to the
+ * topic's subscribers only when the forecast content changed. Upstream calls therefore follow the number of watched
+ * locations and the cache TTL, not the number of subscribers, and a subscriber costs little more than its connection.
+ * <p>
+ * A subscriber first receives a {@code forecast} event with the body of the matching forecast endpoint. Changes then
+ * arrive as {@code update} events with the same shape but only the days or hours that changed; when the days or hours
+ * themselves change, a new {@code forecast} event replaces the whole document. Each event is serialized once per
+ * topic and unit. Event ids name the content, so a client reconnecting with {@code Last-Event-ID} skips the forecast
+ * it already has, and comment lines sent on quiet polls keep idle connections open and reveal closed ones.
+ * <p>
+ * Writing to a client may block, so publishing only queues events: each subscriber has a bounded outbox drained by
+ * a small pool of sender threads, and no socket is written while a topic is locked. A subscriber that falls
+ * {@code max-queued-events} behind is disconnected instead of holding back the others; its browser reconnects and
+ * catches up with the current forecast.
+ */
+@Component
+public class ForecastSubscriptions {
+    @Autowired
+    private WeatherService weatherService;
+
+    @Autowired
+    private WeatherMetrics metrics = new WeatherMetrics();
+
+    @Autowired
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${weather.subscriptions.poll-interval:PT1M}")
+    private Duration pollInterval = Duration.ofMinutes(1);
+
+    // Clients reconnect after this, which also releases connections that were closed without notice
+    @Value("${weather.subscriptions.timeout:PT30M}")
+    private Duration timeout = Duration.ofMinutes(30);
+
+    @Value("${weather.subscriptions.max-subscribers:10000}")
+    private int maxSubscribers = 10_000;
+
+    @Value("${weather.subscriptions.max-queued-events:16}")
+    private int maxQueuedEvents = 16;
+
+    @Value("${weather.subscriptions.sender-threads:4}")
+    private int senderThreads = 4;
+
+    // Sends on the calling thread until start() creates the sender pool
+    private Executor senders = Runnable::run;
+    private ExecutorService senderPool;
+
+    private static final Event HEARTBEAT = new Event(null, null, null);
+
+    private final Map<ForecastKey, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threads = new AtomicInteger();
+        senderPool = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "forecast-events-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        senders = senderPool;
+        Gauge.builder("weather.subscriptions.active", subscribers, AtomicInteger::get).register(metrics.registry());
+        Gauge.builder("weather.subscriptions.topics", topics, Map::size).register(metrics.registry());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (senderPool != null) {
+            senderPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens a subscription to the forecast for {@code key} in {@code unit}, or returns {@code null} when the subscriber
+     * limit is reached. The current forecast is sent as soon as it is available.
+     */
+    public SseEmitter subscribe(ForecastKey key, TemperatureUnit unit, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        return subscribe(key, unit, lastEventId, emitter) ? emitter : null;
+    }
+
+    boolean subscribe(ForecastKey key, TemperatureUnit unit, String lastEventId, SseEmitter emitter) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return false;
+        }
+        Subscriber subscriber = new Subscriber(emitter, unit, lastEventId);
+        Topic topic = topics.compute(key, (k, existing) -> {
+            Topic joined = existing == null ? new Topic(k) : existing;
+            joined.subscribers.add(subscriber);
+            joined.pending.add(subscriber);
+            return joined;
+        });
+        emitter.onCompletion(() -> unsubscribe(topic, subscriber));
+        emitter.onTimeout(() -> unsubscribe(topic, subscriber));
+        emitter.onError(error -> unsubscribe(topic, subscriber));
+        poll(topic, false);
+        return true;
+    }
+
+    @Scheduled(initialDelayString = "${weather.subscriptions.poll-interval:PT1M}",
+            fixedDelayString = "${weather.subscriptions.poll-interval:PT1M}")
+    public void poll() {
+        topics.values().forEach(topic -> poll(topic, true));
+    }
+
+    /** Reads the topic's forecast and publishes it; completes once the events have been sent. */
+    CompletableFuture<Void> poll(Topic topic, boolean heartbeat) {
+        return load(topic.key)
+                .handle((entry, error) -> error == null ? entry : null)
+                .thenAccept(entry -> {
+                    publish(topic, entry, heartbeat);
+                    if (entry != null) {
+                        weatherService.refreshAhead(topic.key, pollInterval);
+                    }
+                });
+    }
+
+    int subscriberCount() {
+        return subscribers.get();
+    }
+
+    int topicCount() {
+        return topics.size();
+    }
+
+    private CompletableFuture<? extends ForecastCache.Entry<?>> load(ForecastKey key) {
+        try {
+            if (key.getKind() == ForecastKey.Kind.WEEKLY) {
+                return weatherService.getWeeklyForecastEntryAsync(key.getLatitude(), key.getLongitude());
+            }
+            return weatherService.getHourlyForecastEntryAsync(key.getLatitude(), key.getLongitude());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Sends the changes since the previous forecast to the topic's subscribers and the whole forecast to the new ones.
+     * A {@code null} entry (forecast unavailable) changes nothing. With {@code heartbeat}, subscribers that were sent
+     * nothing get a comment line. Events are only queued here; they are written by the sender threads.
+     */
+    private void publish(Topic topic, ForecastCache.Entry<?> entry, boolean heartbeat) {
+        synchronized (topic) {
+            Map<TemperatureUnit, Event> changes = new EnumMap<>(TemperatureUnit.class);
+            if (entry != null && !entry.getETag().equals(topic.etag)) {
+                topic.etag = entry.getETag();
+                topic.variants.replaceAll((unit, previous) -> {
+                    Variant next = variant(topic.key.getKind(), entry, unit);
+                    if (next.tree.equals(previous.tree)) {
+                        return previous;
+                    }
+                    changes.put(unit, change(topic.key.getKind(), previous, next));
+                    return next;
+                });
+            }
+            for (Subscriber subscriber : topic.subscribers) {
+                Event event = changes.get(subscriber.unit);
+                if (subscriber.ready && (event != null || heartbeat)) {
+                    enqueue(topic, subscriber, event == null ? HEARTBEAT : event);
+                }
+            }
+            for (int waiting = topic.pending.size(); waiting > 0; waiting--) {
+                Subscriber subscriber = topic.pending.poll();
+                if (subscriber == null) {
+                    break;
+                }
+                Variant variant = topic.variants.get(subscriber.unit);
+                if (variant == null && entry != null) {
+                    variant = variant(topic.key.getKind(), entry, subscriber.unit);
+                    topic.variants.put(subscriber.unit, variant);
+                }
+                if (variant == null) {
+                    topic.pending.add(subscriber);
+                    continue;
+                }
+                subscriber.ready = true;
+                boolean current = variant.id.equals(subscriber.lastEventId);
+                subscriber.lastEventId = null;
+                if (!current) {
+                    enqueue(topic, subscriber, new Event("forecast", variant.id, variant.json));
+                } else if (heartbeat) {
+                    enqueue(topic, subscriber, HEARTBEAT);
+                }
+            }
+        }
+    }
+
+    /** Queues an event for the subscriber; one that already has {@code max-queued-events} waiting is dropped. */
+    private void enqueue(Topic topic, Subscriber subscriber, Event event) {
+        if (subscriber.queued.incrementAndGet() > maxQueuedEvents) {
+            metrics.subscriptionDropped();
+            unsubscribe(topic, subscriber);
+            senders.execute(subscriber.emitter::complete);
+            return;
+        }
+        subscriber.outbox.add(event);
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(topic, subscriber));
+        }
+    }
+
+    /** Writes the subscriber's queued events in order; runs on one sender thread at a time per subscriber. */
+    private void drain(Topic topic, Subscriber subscriber) {
+        do {
+            for (Event event = subscriber.outbox.poll(); event != null; event = subscriber.outbox.poll()) {
+                subscriber.queued.decrementAndGet();
+                send(topic, subscriber, event);
+            }
+            subscriber.draining.set(false);
+        } while (!subscriber.outbox.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    /** Writes an event, or a comment line for {@link #HEARTBEAT}; drops the subscriber if that fails. */
+    private void send(Topic topic, Subscriber subscriber, Event event) {
+        if (!topic.subscribers.contains(subscriber)) {
+            return;
+        }
+        try {
+            if (event == HEARTBEAT) {
+                subscriber.emitter.send(SseEmitter.event().comment(""));
+            } else {
+                subscriber.emitter.send(SseEmitter.event().name(event.name).id(event.id)
+                        .data(event.json, MediaType.APPLICATION_JSON));
+                metrics.subscriptionEventSent(event.name);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the emitter already completed
+            unsubscribe(topic, subscriber);
+        }
+    }
+
+    private void unsubscribe(Topic topic, Subscriber subscriber) {
+        if (!topic.subscribers.remove(subscriber)) {
+            return;
+        }
+        topic.pending.remove(subscriber);
+        subscribers.decrementAndGet();
+        topics.computeIfPresent(topic.key, (key, current) -> current.subscribers.isEmpty() ? null : current);
+    }
+
+    private Variant variant(ForecastKey.Kind kind, ForecastCache.Entry<?> entry, TemperatureUnit unit) {
+        Object body = kind == ForecastKey.Kind.WEEKLY
+                ? ((DailySeries) entry.getValue()).toResponse(unit)
+                : ((HourlySeries) entry.getValue()).toResponse(unit, WeatherService.HOURLY_ROWS);
+        JsonNode tree = objectMapper.valueToTree(body);
+        return new Variant(entry.getETag(unit.label()).replace("\"", ""), tree, json(tree));
+    }
+
+    private Event change(ForecastKey.Kind kind, Variant previous, Variant next) {
+        String list = kind == ForecastKey.Kind.WEEKLY ? "forecast" : "hourly";
+        String key = kind == ForecastKey.Kind.WEEKLY ? "day" : "hour";
+        ObjectNode changed = changedItems(previous.tree, next.tree, list, key);
+        return changed == null
+                ? new Event("forecast", next.id, next.json)
+                : new Event("update", next.id, json(changed));
+    }
+
+    /**
+     * The items of {@code current}'s {@code list} array that differ from the item at the same position in
+     * {@code previous}, in a document of the same shape; {@code null} when the other fields or the items' {@code key}
+     * values differ as well, so that only the full document describes the change.
+     */
+    static ObjectNode changedItems(JsonNode previous, JsonNode current, String list, String key) {
+        if (previous.size() != current.size()) {
+            return null;
+        }
+        for (Iterator<String> names = current.fieldNames(); names.hasNext(); ) {
+            String name = names.next();
+            if (!name.equals(list) && !current.get(name).equals(previous.get(name))) {
+                return null;
+            }
+        }
+        JsonNode before = previous.path(list);
+        JsonNode after = current.path(list);
+        if (!before.isArray() || !after.isArray() || before.size() != after.size()) {
+            return null;
+        }
+        ArrayNode changed = JsonNodeFactory.instance.arrayNode();
+        for (int i = 0; i < after.size(); i++) {
+            if (!after.get(i).path(key).equals(before.get(i).path(key))) {
+                return null;
+            }
+            if (!after.get(i).equals(before.get(i))) {
+                changed.add(after.get(i));
+            }
+        }
+        ObjectNode document = JsonNodeFactory.instance.objectNode();
+        document.set(list, changed);
+        return document;
+    }
+
+    private String json(JsonNode tree) {
+        try {
+            return objectMapper.writeValueAsString(tree);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize forecast event", e);
+        }
+    }
+
+    void setWeatherService(WeatherService weatherService) {
+        this.weatherService = weatherService;
+    }
+
+    void setMaxSubscribers(int maxSubscribers) {
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    void setMaxQueuedEvents(int maxQueuedEvents) {
+        this.maxQueuedEvents = maxQueuedEvents;
+    }
+
+    void setSenders(Executor senders) {
+        this.senders = senders;
+    }
+
+    /** The subscribers of one forecast key and the forecast they were last sent, per unit. */
+    static final class Topic {
+        private final ForecastKey key;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        // Subscribers still waiting for their first forecast
+        private final Queue<Subscriber> pending = new ConcurrentLinkedQueue<>();
+        private final Map<TemperatureUnit, Variant> variants = new EnumMap<>(TemperatureUnit.class);
+        private String etag;
+
+        private Topic(ForecastKey key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final TemperatureUnit unit;
+        private final Queue<Event> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private String lastEventId;
+        private boolean ready;
+
+        private Subscriber(SseEmitter emitter, TemperatureUnit unit, String lastEventId) {
+            this.emitter = emitter;
+            this.unit = unit;
+            this.lastEventId = lastEventId;
+        }
+    }
+
+    private static final class Variant {
+        private final String id;
+        private final JsonNode tree;
+        // Sent to every new subscriber as is
+        private final String json;
+
+        private Variant(String id, JsonNode tree, String json) {
+            this.id = id;
+            this.tree = tree;
+            this.json = json;
+        }
+    }
+
+    private static final class Event {
+        private final String name;
+        private final String id;
+        private final String json;
+
+        private Event(String name, String id, String json) {
+            this.name = name;
+            this.id = id;
+            this.json = json;
+        }
+    }
+}
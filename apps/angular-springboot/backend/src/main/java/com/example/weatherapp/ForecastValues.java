@@ -0,0 +1,41 @@
+package com.example.weatherapp;
+
+import java.util.Arrays;
+
+/** Helpers shared by the primitive forecast series. */
+final class ForecastValues {
+
+    private ForecastValues() {}
+
+    /**
+     * Rounds a stored float to one decimal, the resolution Open-Meteo reports, so values such as 31.2f are written as
+     * 31.2 rather than 31.200000762939453.
+     */
+    static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    /** Growable column filled from an upstream array; positions that are never set stay 0. */
+    static final class Column {
+        private float[] values = new float[32];
+
+        void set(int index, float value) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, Math.max(index + 1, values.length * 2));
+            }
+            values[index] = value;
+        }
+
+        float[] toArray(int length) {
+            return Arrays.copyOf(values, length);
+        }
+
+        byte[] toByteArray(int length) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length && i < values.length; i++) {
+                bytes[i] = (byte) values[i];
+            }
+            return bytes;
+        }
+    }
+}
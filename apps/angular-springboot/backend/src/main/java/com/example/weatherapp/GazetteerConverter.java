@@ -0,0 +1,138 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.Location;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Build-time converter from a JSON or CSV location list to the memory-mapped gazetteer format served by
+ * {@link LocationService} when {@code weather.locations.gazetteer} is set.
+ * <p>
+ * Usage: {@code mvn compile exec:java -Dexec.mainClass=com.example.weatherapp.GazetteerConverter
+ * -Dexec.args="<input.json|input.csv> <output.gaz>"}
+ * <p>
+ * JSON input has the same shape as {@code data/locations.json}. CSV input needs a header row naming the columns
+ * {@code id,name,type,state,country,latitude,longitude,airportCode} in any order; fields may be double-quoted.
+ * A row with a missing or out-of-range coordinate stops the conversion with its file name and line number.
+ */
+public class GazetteerConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: GazetteerConverter <input.json|input.csv> <output.gaz>");
+            System.exit(2);
+        }
+        long started = System.nanoTime();
+        List<Location> locations = read(Paths.get(args[0]));
+        LocationIndexWriter.write(locations, Paths.get(args[1]));
+        System.out.printf("Wrote %d locations to %s (%d bytes) in %d ms%n", locations.size(), args[1],
+                Files.size(Paths.get(args[1])), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    static List<Location> read(Path input) throws IOException {
+        if (input.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+                return readCsv(reader, input.toString());
+            }
+        }
+        try (InputStream in = Files.newInputStream(input)) {
+            return new ObjectMapper().readValue(in, new TypeReference<List<Location>>() {});
+        }
+    }
+
+    /** Reads CSV rows, failing with the {@code source} name and line number of the first row that is not valid. */
+    static List<Location> readCsv(BufferedReader reader, String source) throws IOException {
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            return new ArrayList<>();
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> header = splitCsv(headerLine);
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim(), i);
+        }
+        List<Location> locations = new ArrayList<>();
+        String line;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty()) {
+                continue;
+            }
+            List<String> row = splitCsv(line);
+            Location location = new Location();
+            location.setId(column(row, columns, "id"));
+            location.setName(column(row, columns, "name"));
+            location.setType(column(row, columns, "type"));
+            location.setState(column(row, columns, "state"));
+            location.setCountry(column(row, columns, "country"));
+            location.setLatitude(coordinate(row, columns, "latitude", 90, source, lineNumber));
+            location.setLongitude(coordinate(row, columns, "longitude", 180, source, lineNumber));
+            String airportCode = column(row, columns, "airportCode");
+            location.setAirportCode(airportCode == null || airportCode.isEmpty() ? null : airportCode);
+            locations.add(location);
+        }
+        return locations;
+    }
+
+    private static double coordinate(List<String> row, Map<String, Integer> columns, String name, double limit,
+                                     String source, int lineNumber) throws IOException {
+        String value = column(row, columns, name);
+        double coordinate;
+        try {
+            coordinate = Double.parseDouble(value == null ? "" : value.trim());
+        } catch (NumberFormatException e) {
+            coordinate = Double.NaN;
+        }
+        if (!(Math.abs(coordinate) <= limit)) {
+            throw new IOException(source + ":" + lineNumber + ": invalid " + name + " '" + value + "'");
+        }
+        return coordinate;
+    }
+
+    private static String column(List<String> row, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= row.size() ? null : row.get(index);
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The rows of an hourly forecast selected by one request: a horizon, a unit and a set of fields. Rows are written
+ * straight from the cached {@link HourlySeries} to a streaming generator, so a response needs no per-row objects and
+ * its memory does not grow with the horizon.
+ */
+public final class HourlyRows {
+    public enum Field {
+        HOUR("hour"),
+        TIME("time"),
+        TEMPERATURE("temperature"),
+        PRECIPITATION("precipitationChance"),
+        WEATHER_CODE("weatherCode");
+
+        private final String jsonName;
+
+        Field(String jsonName) {
+            this.jsonName = jsonName;
+        }
+
+        public String jsonName() {
+            return jsonName;
+        }
+
+        /** Parses a comma-separated list of JSON field names; {@code null} or blank selects the default fields. */
+        public static Set<Field> parse(String fields) {
+            if (fields == null || fields.isBlank()) {
+                return DEFAULT_FIELDS;
+            }
+            Set<Field> selected = EnumSet.noneOf(Field.class);
+            for (String name : fields.split(",")) {
+                selected.add(named(name.trim()));
+            }
+            return selected;
+        }
+
+        private static Field named(String name) {
+            for (Field field : values()) {
+                if (field.jsonName.equalsIgnoreCase(name)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown field '" + name + "'");
+        }
+    }
+
+    /** The fields of the original hourly response. */
+    public static final Set<Field> DEFAULT_FIELDS = EnumSet.of(Field.HOUR, Field.TEMPERATURE, Field.PRECIPITATION);
+
+    private final HourlySeries series;
+    private final TemperatureUnit unit;
+    private final int count;
+    private final Set<Field> fields;
+
+    public HourlyRows(HourlySeries series, TemperatureUnit unit, int hours, Set<Field> fields) {
+        this.series = series;
+        this.unit = unit;
+        this.count = Math.min(hours, series.size());
+        this.fields = fields;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** Writes {@code {"hourly":[...]}}, the shape of the buffered hourly response. */
+    public void writeJson(JsonGenerator out) throws IOException {
+        out.writeStartObject();
+        out.writeArrayFieldStart("hourly");
+        for (int i = 0; i < count; i++) {
+            writeRow(out, i);
+        }
+        out.writeEndArray();
+        out.writeEndObject();
+    }
+
+    /** Writes one JSON object per line. */
+    public void writeNdjson(JsonGenerator out) throws IOException {
+        // Rows are ended by the newline alone, without the space Jackson puts between root values
+        out.setRootValueSeparator(null);
+        for (int i = 0; i < count; i++) {
+            writeRow(out, i);
+            out.writeRaw('\n');
+        }
+    }
+
+    private void writeRow(JsonGenerator out, int i) throws IOException {
+        out.writeStartObject();
+        for (Field field : fields) {
+            switch (field) {
+                case HOUR:
+                    out.writeNumberField(field.jsonName, i);
+                    break;
+                case TIME:
+                    LocalDateTime time = series.time(i);
+                    out.writeStringField(field.jsonName, time == null ? null : time.toString());
+                    break;
+                case TEMPERATURE:
+                    out.writeNumberField(field.jsonName, series.temperature(i, unit));
+                    break;
+                case PRECIPITATION:
+                    out.writeNumberField(field.jsonName, series.precipitation(i));
+                    break;
+                default:
+                    out.writeNumberField(field.jsonName, series.weatherCode(i));
+            }
+        }
+        out.writeEndObject();
+    }
+}
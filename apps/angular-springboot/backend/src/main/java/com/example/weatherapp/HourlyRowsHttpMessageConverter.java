@@ -0,0 +1,53 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link HourlyRows} as a JSON document or as NDJSON, depending on the negotiated content type. The response
+ * has no content length, so it is sent chunked as the generator's buffer fills.
+ */
+public class HourlyRowsHttpMessageConverter extends AbstractHttpMessageConverter<HourlyRows> {
+    private final ObjectMapper objectMapper;
+
+    public HourlyRowsHttpMessageConverter(ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return HourlyRows.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected HourlyRows readInternal(Class<? extends HourlyRows> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Hourly rows are write-only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(HourlyRows rows, HttpOutputMessage outputMessage) throws IOException {
+        boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(outputMessage.getHeaders().getContentType());
+        // Not closed: that would close the response stream, which the container still owns
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputMessage.getBody(), JsonEncoding.UTF8);
+        if (ndjson) {
+            rows.writeNdjson(generator);
+        } else {
+            rows.writeJson(generator);
+        }
+        generator.flush();
+    }
+}
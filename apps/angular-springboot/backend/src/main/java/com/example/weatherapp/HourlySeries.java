@@ -0,0 +1,151 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.HourlyForecast;
+import com.example.weatherapp.model.HourlyForecastResponse;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An hourly forecast as kept in the forecast cache: primitive columns in canonical units (Celsius, millimetres) with a
+ * start time and step instead of one timestamp per row. Responses are sliced and converted from it.
+ * <p>
+ * Open-Meteo reports local times, so an axis that crosses a daylight saving change skips or repeats an hour. Such an
+ * axis is kept as an explicit time column instead, since a start and a step would shift every row after the change.
+ */
+public final class HourlySeries {
+    private final LocalDateTime start;
+    private final int stepSeconds;
+    private final float[] temperatures;
+    private final float[] precipitation;
+    private final byte[] weatherCodes;
+    // Local times as epoch seconds at UTC, only when they are not evenly spaced
+    private final long[] times;
+
+    HourlySeries(LocalDateTime start, int stepSeconds, float[] temperatures, float[] precipitation, byte[] weatherCodes) {
+        this(start, stepSeconds, temperatures, precipitation, weatherCodes, null);
+    }
+
+    private HourlySeries(LocalDateTime start, int stepSeconds, float[] temperatures, float[] precipitation,
+                         byte[] weatherCodes, long[] times) {
+        this.start = start;
+        this.stepSeconds = stepSeconds;
+        this.temperatures = temperatures;
+        this.precipitation = precipitation;
+        this.weatherCodes = weatherCodes;
+        this.times = times;
+    }
+
+    /**
+     * A series over the local {@code times} (epoch seconds at UTC, one per row): kept as start and step when they are
+     * evenly spaced, as an explicit column otherwise.
+     */
+    static HourlySeries of(long[] times, float[] temperatures, float[] precipitation, byte[] weatherCodes) {
+        if (times.length == 0) {
+            return new HourlySeries(null, 0, temperatures, precipitation, weatherCodes);
+        }
+        LocalDateTime start = LocalDateTime.ofEpochSecond(times[0], 0, ZoneOffset.UTC);
+        int stepSeconds = times.length > 1 ? (int) (times[1] - times[0]) : 0;
+        for (int i = 2; i < times.length; i++) {
+            if (times[i] != times[0] + (long) stepSeconds * i) {
+                return new HourlySeries(start, stepSeconds, temperatures, precipitation, weatherCodes, times);
+            }
+        }
+        return new HourlySeries(start, stepSeconds, temperatures, precipitation, weatherCodes);
+    }
+
+    public int size() {
+        return temperatures.length;
+    }
+
+    /** Local time of the row at {@code index}, or {@code null} when the upstream response had no time axis. */
+    public LocalDateTime time(int index) {
+        if (times != null) {
+            return LocalDateTime.ofEpochSecond(times[index], 0, ZoneOffset.UTC);
+        }
+        return start == null ? null : start.plusSeconds((long) stepSeconds * index);
+    }
+
+    public double temperature(int index, TemperatureUnit unit) {
+        return unit.fromCelsius(temperatures[index]);
+    }
+
+    /** Precipitation in millimetres, rounded like the upstream data. */
+    public double precipitation(int index) {
+        return ForecastValues.round(precipitation[index]);
+    }
+
+    public int weatherCode(int index) {
+        return weatherCodes[index];
+    }
+
+    /** The first {@code maxHours} rows in the requested unit. */
+    public HourlyForecastResponse toResponse(TemperatureUnit unit, int maxHours) {
+        int count = Math.min(maxHours, size());
+        List<HourlyForecast> hours = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            HourlyForecast hour = new HourlyForecast();
+            hour.setHour(i);
+            hour.setTemperature(temperature(i, unit));
+            hour.setPrecipitationChance(precipitation(i));
+            hours.add(hour);
+        }
+        return new HourlyForecastResponse(hours);
+    }
+
+    /** Retained size: object headers and fields plus 9 bytes per hour, and 8 more with an explicit time column. */
+    int estimatedBytes() {
+        return 128 + size() * (2 * Float.BYTES + 1 + (times == null ? 0 : Long.BYTES));
+    }
+
+    /** Size of the binary form written by {@link #writeTo}. */
+    int encodedBytes() {
+        return 1 + Long.BYTES + 2 * Integer.BYTES + size() * (2 * Float.BYTES + 1 + (times == null ? 0 : Long.BYTES));
+    }
+
+    /**
+     * Writes the binary form kept by {@link ForecastStore}; local times are stored as if they were UTC. The leading
+     * byte tells whether there is no time axis (0), a start and step (1), or also a time column after the rows (2).
+     */
+    void writeTo(ByteBuffer out) {
+        out.put((byte) (times != null ? 2 : start == null ? 0 : 1));
+        out.putLong(start == null ? 0 : start.toEpochSecond(ZoneOffset.UTC));
+        out.putInt(stepSeconds).putInt(size());
+        for (int i = 0; i < size(); i++) {
+            out.putFloat(temperatures[i]).putFloat(precipitation[i]).put(weatherCodes[i]);
+        }
+        if (times != null) {
+            for (long time : times) {
+                out.putLong(time);
+            }
+        }
+    }
+
+    static HourlySeries readFrom(ByteBuffer in) {
+        byte axis = in.get();
+        boolean hasStart = axis != 0;
+        long startSeconds = in.getLong();
+        LocalDateTime start = hasStart ? LocalDateTime.ofEpochSecond(startSeconds, 0, ZoneOffset.UTC) : null;
+        int stepSeconds = in.getInt();
+        int size = in.getInt();
+        float[] temperatures = new float[size];
+        float[] precipitation = new float[size];
+        byte[] codes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            temperatures[i] = in.getFloat();
+            precipitation[i] = in.getFloat();
+            codes[i] = in.get();
+        }
+        long[] times = null;
+        if (axis == 2) {
+            times = new long[size];
+            for (int i = 0; i < size; i++) {
+                times[i] = in.getLong();
+            }
+        }
+        return new HourlySeries(start, stepSeconds, temperatures, precipitation, codes, times);
+    }
+}
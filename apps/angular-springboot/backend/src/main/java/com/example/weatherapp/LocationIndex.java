@@ -0,0 +1,675 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.Location;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable search index over a set of locations, read from the binary gazetteer format written by
+ * {@link LocationIndexWriter} (see {@link GazetteerConverter}). The file is memory-mapped and queried in place:
+ * the heap holds only a handful of buffer views, whatever the number of locations, and {@link Location} objects
+ * are materialized only for returned results.
+ * <p>
+ * Names are normalized (accents folded, lower-cased, punctuation collapsed to single spaces) and indexed as an
+ * n-gram inverted index with three kinds of grams: every trigram of the name, the first one to three characters of
+ * the name, and the first one to three characters of every word. Airport codes are looked up in a sorted code table.
+ * <p>
+ * Ordinals are assigned in ranking order at build time (cities first, then airports, then other types; shorter
+ * names first; then dataset order), so every posting list is already sorted best-first. A query walks the tiers in
+ * order (airport code, name prefix, word prefix, substring), scans the shortest posting list that must contain every
+ * match of the tier, and stops as soon as {@code limit} results are found. Query cost is therefore bounded by the
+ * result limit for common queries rather than by the number of matching locations. When the exact tiers leave room, a
+ * fuzzy tier adds names within one or two edits of the query; its cost is capped by a per-query candidate budget.
+ * <p>
+ * Nearest-location lookups use an implicit k-d tree over unit vectors on the sphere, stored as a permutation of the
+ * ordinals plus the vectors in tree order. Straight-line distance between unit vectors orders points exactly like
+ * great-circle distance and has no wrap-around at the antimeridian.
+ */
+public final class LocationIndex {
+    static final int MAGIC = 0x47415a31;
+    static final int VERSION = 4;
+    static final int HEADER_BYTES = 24;
+
+    static final int SECTION_LATITUDES = 0;
+    static final int SECTION_LONGITUDES = 1;
+    static final int SECTION_FIELDS = 2;
+    static final int SECTION_POOL_OFFSETS = 3;
+    static final int SECTION_POOL_BYTES = 4;
+    static final int SECTION_GRAMS = 5;
+    static final int SECTION_POSTING_OFFSETS = 6;
+    static final int SECTION_POSTINGS = 7;
+    static final int SECTION_CODE_INDEX = 8;
+    static final int SECTION_TREE = 9;
+    static final int SECTION_TREE_POINTS = 10;
+    static final int SECTION_ID_INDEX = 11;
+    static final int SECTION_COUNT = 12;
+
+    static final int FIELD_ID = 0;
+    static final int FIELD_NAME = 1;
+    static final int FIELD_TYPE = 2;
+    static final int FIELD_STATE = 3;
+    static final int FIELD_COUNTRY = 4;
+    static final int FIELD_AIRPORT_CODE = 5;
+    static final int FIELD_KEY = 6;
+    static final int FIELD_COUNT = 7;
+
+    /** Default number of names a query's fuzzy tier may compare with the query. */
+    public static final int DEFAULT_FUZZY_CANDIDATES = 1000;
+    // Posting entries the fuzzy tier may visit per name it may compare
+    private static final int POSTINGS_PER_CANDIDATE = 32;
+    // Longer queries are matched on their first characters, which already single out the name being typed
+    private static final int MAX_FUZZY_CHARS = 24;
+
+    static final long KIND_TRIGRAM = 1L << 48;
+    static final long KIND_NAME_START = 2L << 48;
+    static final long KIND_WORD_START = 3L << 48;
+
+    private final int size;
+    private final long checksum;
+    private final DoubleBuffer latitudes;
+    private final DoubleBuffer longitudes;
+    private final IntBuffer fields;
+    private final IntBuffer poolOffsets;
+    private final ByteBuffer poolBytes;
+    private final LongBuffer grams;
+    private final IntBuffer postingOffsets;
+    private final IntBuffer postings;
+    private final IntBuffer codeIndex;
+    private final IntBuffer tree;
+    private final DoubleBuffer treePoints;
+    private final IntBuffer idIndex;
+
+    private LocationIndex(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(12) != SECTION_COUNT) {
+            throw new IllegalArgumentException("Not a version " + VERSION + " gazetteer file");
+        }
+        this.size = buffer.getInt(8);
+        this.checksum = buffer.getLong(16);
+        this.latitudes = section(buffer, SECTION_LATITUDES).asDoubleBuffer();
+        this.longitudes = section(buffer, SECTION_LONGITUDES).asDoubleBuffer();
+        this.fields = section(buffer, SECTION_FIELDS).asIntBuffer();
+        this.poolOffsets = section(buffer, SECTION_POOL_OFFSETS).asIntBuffer();
+        this.poolBytes = section(buffer, SECTION_POOL_BYTES);
+        this.grams = section(buffer, SECTION_GRAMS).asLongBuffer();
+        this.postingOffsets = section(buffer, SECTION_POSTING_OFFSETS).asIntBuffer();
+        this.postings = section(buffer, SECTION_POSTINGS).asIntBuffer();
+        this.codeIndex = section(buffer, SECTION_CODE_INDEX).asIntBuffer();
+        this.tree = section(buffer, SECTION_TREE).asIntBuffer();
+        this.treePoints = section(buffer, SECTION_TREE_POINTS).asDoubleBuffer();
+        this.idIndex = section(buffer, SECTION_ID_INDEX).asIntBuffer();
+    }
+
+    /** Builds an in-memory index; used for small datasets such as the bundled JSON file. */
+    public static LocationIndex build(List<Location> source) {
+        return new LocationIndex(LocationIndexWriter.encode(source));
+    }
+
+    /** Memory-maps a gazetteer file written by {@link GazetteerConverter}. */
+    public static LocationIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new LocationIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Latitude of the location at {@code ordinal}; ordinals run from 0 to {@link #size()}, most important first. */
+    public double latitude(int ordinal) {
+        return latitudes.get(ordinal);
+    }
+
+    public double longitude(int ordinal) {
+        return longitudes.get(ordinal);
+    }
+
+    /** CRC-32C of the indexed data, computed when the index was written; identifies the dataset version. */
+    public long checksum() {
+        return checksum;
+    }
+
+    /** Returns up to {@code limit} locations matching the query, best match first. */
+    public List<Location> search(String query, int limit) {
+        return search(query, limit, DEFAULT_FUZZY_CANDIDATES);
+    }
+
+    /**
+     * Returns up to {@code limit} locations matching the query, best match first. When the exact tiers leave room,
+     * names within a small edit distance of the query follow; at most {@code fuzzyCandidates} names are compared with
+     * the query, which bounds the cost of typo tolerance per query. 0 disables it.
+     */
+    public List<Location> search(String query, int limit, int fuzzyCandidates) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<Integer> ords = new ArrayList<>(Math.min(limit, 16));
+        String code = normalizeCode(query);
+        int codeMatches = 0;
+        for (int i = firstCode(code); i < codeIndex.limit() && code.equals(code(codeIndex.get(i))); i++) {
+            if (ords.size() < limit) {
+                ords.add(codeIndex.get(i));
+            }
+            codeMatches++;
+        }
+        String excludedCode = codeMatches == 0 ? null : code;
+        long prefixGram = prefixGram(q);
+        collect(q, KIND_NAME_START | prefixGram, Tier.PREFIX, excludedCode, limit, ords);
+        collect(q, KIND_WORD_START | prefixGram, Tier.WORD_PREFIX, excludedCode, limit, ords);
+        if (q.length() >= 3) {
+            collect(q, -1, Tier.SUBSTRING, excludedCode, limit, ords);
+        }
+        if (ords.size() < limit && fuzzyCandidates > 0) {
+            fuzzy(q, limit, fuzzyCandidates, ords);
+        }
+        return ords.stream().map(this::location).collect(Collectors.toList());
+    }
+
+    /** Returns the location with the given id, or {@code null} when there is none. */
+    public Location findById(String id) {
+        int low = 0;
+        int high = idIndex.limit() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = string(idIndex.get(mid), FIELD_ID).compareTo(id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return location(idIndex.get(mid));
+            }
+        }
+        return null;
+    }
+
+    /** Returns up to {@code k} locations closest to the given coordinates, nearest first. */
+    public List<Location> nearest(double latitude, double longitude, int k) {
+        if (size == 0 || k <= 0) {
+            return Collections.emptyList();
+        }
+        double[] target = new double[3];
+        unitVector(latitude, longitude, target, 0);
+        Neighbours neighbours = new Neighbours(Math.min(k, size));
+        nearest(target, 0, size, 0, neighbours);
+        return neighbours.sorted().stream().map(this::location).collect(Collectors.toList());
+    }
+
+    private void nearest(double[] target, int lo, int hi, int axis, Neighbours neighbours) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double dx = target[0] - treePoints.get(mid * 3);
+        double dy = target[1] - treePoints.get(mid * 3 + 1);
+        double dz = target[2] - treePoints.get(mid * 3 + 2);
+        neighbours.offer(dx * dx + dy * dy + dz * dz, tree.get(mid));
+        double split = target[axis] - treePoints.get(mid * 3 + axis);
+        int next = (axis + 1) % 3;
+        if (split < 0) {
+            nearest(target, lo, mid, next, neighbours);
+            if (split * split < neighbours.worst()) {
+                nearest(target, mid + 1, hi, next, neighbours);
+            }
+        } else {
+            nearest(target, mid + 1, hi, next, neighbours);
+            if (split * split < neighbours.worst()) {
+                nearest(target, lo, mid, next, neighbours);
+            }
+        }
+    }
+
+    static void unitVector(double latitude, double longitude, double[] out, int at) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        out[at] = Math.cos(lat) * Math.cos(lon);
+        out[at + 1] = Math.cos(lat) * Math.sin(lon);
+        out[at + 2] = Math.sin(lat);
+    }
+
+    /** Bounded max-heap of (squared distance, ordinal) pairs keeping the closest candidates seen so far. */
+    private static final class Neighbours {
+        private final double[] distances;
+        private final int[] ords;
+        private int count;
+
+        Neighbours(int capacity) {
+            distances = new double[capacity];
+            ords = new int[capacity];
+        }
+
+        double worst() {
+            return count < distances.length ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(double distance, int ord) {
+            if (count < distances.length) {
+                int i = count++;
+                for (int parent; i > 0 && distances[parent = (i - 1) / 2] < distance; i = parent) {
+                    distances[i] = distances[parent];
+                    ords[i] = ords[parent];
+                }
+                distances[i] = distance;
+                ords[i] = ord;
+            } else if (distance < distances[0]) {
+                int i = 0;
+                for (int child; (child = 2 * i + 1) < count; i = child) {
+                    if (child + 1 < count && distances[child + 1] > distances[child]) {
+                        child++;
+                    }
+                    if (distances[child] <= distance) {
+                        break;
+                    }
+                    distances[i] = distances[child];
+                    ords[i] = ords[child];
+                }
+                distances[i] = distance;
+                ords[i] = ord;
+            }
+        }
+
+        List<Integer> sorted() {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> distances[i]).thenComparingInt(i -> ords[i]));
+            List<Integer> result = new ArrayList<>(count);
+            for (Integer i : order) {
+                result.add(ords[i]);
+            }
+            return result;
+        }
+    }
+
+    private enum Tier { PREFIX, WORD_PREFIX, SUBSTRING }
+
+    /**
+     * Appends the matches of one tier in ordinal order until {@code limit} results are reached. The scanned list is
+     * the shortest of the tier's own gram (if any) and the query's trigrams, all of which every match must contain.
+     */
+    private void collect(String q, long tierGram, Tier tier, String excludedCode, int limit, List<Integer> ords) {
+        if (ords.size() >= limit) {
+            return;
+        }
+        int slot = -1;
+        if (tierGram >= 0) {
+            slot = findGram(tierGram);
+            if (slot < 0) {
+                return;
+            }
+        }
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            int trigramSlot = findGram(KIND_TRIGRAM | trigram(q, i));
+            if (trigramSlot < 0) {
+                return;
+            }
+            if (slot < 0 || postingLength(trigramSlot) < postingLength(slot)) {
+                slot = trigramSlot;
+            }
+        }
+        for (int p = postingOffsets.get(slot); p < postingOffsets.get(slot + 1) && ords.size() < limit; p++) {
+            int ord = postings.get(p);
+            if (classify(string(ord, FIELD_KEY), q) == tier && (excludedCode == null || !excludedCode.equals(code(ord)))) {
+                ords.add(ord);
+            }
+        }
+    }
+
+    /**
+     * Appends names that start, or have a word that starts, within a few edits of the query: one edit for queries of
+     * five to eight characters, two for longer ones. Candidates come from merging the posting lists of the query's
+     * trigrams in ordinal order. A name within {@code k} edits keeps all but at most {@code 3k} of the query's
+     * trigrams, so only names sharing at least that many (and at least one) are compared, with a bounded edit
+     * distance. Matches rank by distance, then name before word start, then ordinal.
+     */
+    private void fuzzy(String query, int limit, int maxCandidates, List<Integer> ords) {
+        String q = query.length() > MAX_FUZZY_CHARS ? query.substring(0, MAX_FUZZY_CHARS).trim() : query;
+        int maxEdits = q.length() < 5 ? 0 : q.length() <= 8 ? 1 : 2;
+        if (maxEdits == 0) {
+            return;
+        }
+        long[] queryGrams = new long[q.length() - 2];
+        for (int i = 0; i < queryGrams.length; i++) {
+            queryGrams[i] = KIND_TRIGRAM | trigram(q, i);
+        }
+        Arrays.sort(queryGrams);
+        int distinct = 0;
+        int[] cursors = new int[queryGrams.length];
+        int[] ends = new int[queryGrams.length];
+        int lists = 0;
+        for (int i = 0; i < queryGrams.length; i++) {
+            if (i > 0 && queryGrams[i] == queryGrams[i - 1]) {
+                continue;
+            }
+            distinct++;
+            int slot = findGram(queryGrams[i]);
+            if (slot >= 0) {
+                cursors[lists] = postingOffsets.get(slot);
+                ends[lists++] = postingOffsets.get(slot + 1);
+            }
+        }
+        int minShared = Math.max(1, distinct - 3 * maxEdits);
+        if (lists < minShared) {
+            return;
+        }
+        PostingMerge merge = new PostingMerge(cursors, ends, lists);
+        long postingBudget = (long) maxCandidates * POSTINGS_PER_CANDIDATE;
+        List<Long> matches = new ArrayList<>();
+        for (int compared = 0; compared < maxCandidates && postingBudget > 0 && merge.hasNext(); ) {
+            int ord = merge.current();
+            int shared = merge.advance();
+            postingBudget -= shared;
+            if (shared >= minShared && !ords.contains(ord)) {
+                compared++;
+                int score = fuzzyScore(string(ord, FIELD_KEY), q, maxEdits);
+                if (score >= 0) {
+                    matches.add((long) score << 32 | ord);
+                }
+            }
+        }
+        Collections.sort(matches);
+        for (int i = 0; i < matches.size() && ords.size() < limit; i++) {
+            ords.add((int) (long) matches.get(i));
+        }
+    }
+
+    /**
+     * Twice the smallest edit distance between the query and a prefix of the key or of one of its words, plus one for
+     * a word, or -1 when none is within {@code maxEdits}.
+     */
+    static int fuzzyScore(String key, String q, int maxEdits) {
+        int best = -1;
+        for (int start = 0; start >= 0 && start < key.length(); ) {
+            int distance = prefixDistance(q, key, start, maxEdits);
+            if (distance <= maxEdits) {
+                int score = 2 * distance + (start == 0 ? 0 : 1);
+                best = best < 0 ? score : Math.min(best, score);
+            }
+            int space = key.indexOf(' ', start);
+            start = space < 0 ? -1 : space + 1;
+        }
+        return best;
+    }
+
+    /**
+     * Optimal string alignment distance (insertions, deletions, substitutions and adjacent transpositions) between
+     * {@code q} and the closest prefix of {@code key} from {@code start}, or {@code maxEdits + 1} once it must exceed
+     * {@code maxEdits}. Only prefixes up to {@code maxEdits} longer than the query can be within reach.
+     */
+    static int prefixDistance(String q, String key, int start, int maxEdits) {
+        int m = q.length();
+        int n = Math.min(key.length() - start, m + maxEdits);
+        int[] beforePrevious = new int[n + 1];
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= m; i++) {
+            char a = q.charAt(i - 1);
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= n; j++) {
+                char b = key.charAt(start + j - 1);
+                int distance = Math.min(Math.min(previous[j], current[j - 1]) + 1, previous[j - 1] + (a == b ? 0 : 1));
+                if (i > 1 && j > 1 && a == key.charAt(start + j - 2) && q.charAt(i - 2) == b) {
+                    distance = Math.min(distance, beforePrevious[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMin = Math.min(rowMin, distance);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        int best = maxEdits + 1;
+        for (int j = 0; j <= n; j++) {
+            best = Math.min(best, previous[j]);
+        }
+        return best;
+    }
+
+    /** Walks several ascending posting lists together in ordinal order, with a min-heap of list cursors. */
+    private final class PostingMerge {
+        private final int[] cursors;
+        private final int[] ends;
+        private final int[] heap;
+        private int size;
+
+        PostingMerge(int[] cursors, int[] ends, int lists) {
+            this.cursors = cursors;
+            this.ends = ends;
+            this.heap = new int[lists];
+            for (int list = 0; list < lists; list++) {
+                if (cursors[list] < ends[list]) {
+                    heap[size] = list;
+                    siftUp(size++);
+                }
+            }
+        }
+
+        boolean hasNext() {
+            return size > 0;
+        }
+
+        int current() {
+            return head(heap[0]);
+        }
+
+        /** Moves every list past the current ordinal and returns how many lists contained it. */
+        int advance() {
+            int ord = current();
+            int count = 0;
+            while (size > 0 && head(heap[0]) == ord) {
+                int list = heap[0];
+                count++;
+                if (++cursors[list] < ends[list]) {
+                    siftDown(0);
+                } else {
+                    heap[0] = heap[--size];
+                    siftDown(0);
+                }
+            }
+            return count;
+        }
+
+        private int head(int list) {
+            return postings.get(cursors[list]);
+        }
+
+        private void siftUp(int i) {
+            int list = heap[i];
+            for (int parent; i > 0 && head(heap[parent = (i - 1) / 2]) > head(list); i = parent) {
+                heap[i] = heap[parent];
+            }
+            heap[i] = list;
+        }
+
+        private void siftDown(int i) {
+            if (size == 0) {
+                return;
+            }
+            int list = heap[i];
+            for (int child; (child = 2 * i + 1) < size; i = child) {
+                if (child + 1 < size && head(heap[child + 1]) < head(heap[child])) {
+                    child++;
+                }
+                if (head(heap[child]) >= head(list)) {
+                    break;
+                }
+                heap[i] = heap[child];
+            }
+            heap[i] = list;
+        }
+    }
+
+    /** Best tier at which the key matches the query, or {@code null} when it does not contain it. */
+    private static Tier classify(String key, String q) {
+        int at = key.indexOf(q);
+        if (at < 0) {
+            return null;
+        }
+        if (at == 0) {
+            return Tier.PREFIX;
+        }
+        for (; at > 0; at = key.indexOf(q, at + 1)) {
+            if (key.charAt(at - 1) == ' ') {
+                return Tier.WORD_PREFIX;
+            }
+        }
+        return Tier.SUBSTRING;
+    }
+
+    private Location location(int ord) {
+        Location location = new Location();
+        location.setId(string(ord, FIELD_ID));
+        location.setName(string(ord, FIELD_NAME));
+        location.setType(string(ord, FIELD_TYPE));
+        location.setState(string(ord, FIELD_STATE));
+        location.setCountry(string(ord, FIELD_COUNTRY));
+        location.setLatitude(latitudes.get(ord));
+        location.setLongitude(longitudes.get(ord));
+        location.setAirportCode(string(ord, FIELD_AIRPORT_CODE));
+        return location;
+    }
+
+    private String string(int ord, int field) {
+        int ref = fields.get(ord * FIELD_COUNT + field);
+        if (ref < 0) {
+            return null;
+        }
+        int start = poolOffsets.get(ref);
+        byte[] bytes = new byte[poolOffsets.get(ref + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = poolBytes.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String code(int ord) {
+        return normalizeCode(string(ord, FIELD_AIRPORT_CODE));
+    }
+
+    /** Lower bound of {@code code} in the code table, which is sorted by code then ordinal. */
+    private int firstCode(String code) {
+        int low = 0;
+        int high = codeIndex.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (code(codeIndex.get(mid)).compareTo(code) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int findGram(long gram) {
+        int low = 0;
+        int high = grams.limit() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = grams.get(mid);
+            if (value < gram) {
+                low = mid + 1;
+            } else if (value > gram) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int postingLength(int slot) {
+        return postingOffsets.get(slot + 1) - postingOffsets.get(slot);
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int section) {
+        int entry = HEADER_BYTES + 8 * section;
+        ByteBuffer view = buffer.duplicate();
+        view.position(buffer.getInt(entry));
+        view.limit(buffer.getInt(entry) + buffer.getInt(entry + 4));
+        return view.slice();
+    }
+
+    /** Accent-folds, lower-cases and collapses every run of non letters/digits into one space. */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                pendingSpace = false;
+                sb.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    static String normalizeCode(String code) {
+        return code == null ? "" : code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    static int typeRank(String type) {
+        if ("City".equalsIgnoreCase(type)) {
+            return 0;
+        }
+        return "Airport".equalsIgnoreCase(type) ? 1 : 2;
+    }
+
+    private static long prefixGram(String q) {
+        int end = Math.min(3, q.length());
+        int space = q.indexOf(' ');
+        return chars(q, 0, space >= 0 && space < end ? space : end);
+    }
+
+    static long trigram(String s, int at) {
+        return chars(s, at, at + 3);
+    }
+
+    /** Packs up to three chars into the low 48 bits, left-aligned so shorter prefixes sort before longer ones. */
+    static long chars(String s, int from, int to) {
+        long packed = 0;
+        for (int i = from; i < from + 3; i++) {
+            packed = (packed << 16) | (i < to ? s.charAt(i) : 0);
+        }
+        return packed;
+    }
+}
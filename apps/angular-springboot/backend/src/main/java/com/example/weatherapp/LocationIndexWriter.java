@@ -0,0 +1,392 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.Location;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+import static com.example.weatherapp.LocationIndex.*;
+
+/**
+ * Encodes a list of locations into the binary gazetteer format read by {@link LocationIndex}.
+ * <p>
+ * Layout: a header (magic, version, row count, section count, CRC-32C of the sections) followed by a table of
+ * (offset, length) pairs and the sections themselves, each aligned to 8 bytes. Every string is stored once in a shared
+ * UTF-8 pool and rows refer to it by number, so repeated types, states and countries cost four bytes per row.
+ */
+final class LocationIndexWriter {
+
+    private LocationIndexWriter() {}
+
+    /** Writes the gazetteer next to {@code target} and moves it into place, so readers never see a partial file. */
+    static void write(List<Location> source, Path target) throws IOException {
+        ByteBuffer encoded = encode(source);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static ByteBuffer encode(List<Location> source) {
+        int n = source.size();
+        String[] sourceKeys = new String[n];
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            Location location = source.get(i);
+            sourceKeys[i] = normalize(location.getName());
+            long length = Math.min(sourceKeys[i].length(), 0xFFF);
+            order[i] = ((long) typeRank(location.getType()) << 44) | (length << 32) | i;
+        }
+        // Ordinals follow ranking order, so every posting list is sorted best-first
+        Arrays.sort(order);
+
+        StringPool pool = new StringPool();
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        int[] fields = new int[n * FIELD_COUNT];
+        String[] keys = new String[n];
+        List<Integer> coded = new ArrayList<>();
+        for (int ord = 0; ord < n; ord++) {
+            int i = (int) order[ord];
+            Location location = source.get(i);
+            keys[ord] = sourceKeys[i];
+            latitudes[ord] = location.getLatitude();
+            longitudes[ord] = location.getLongitude();
+            int row = ord * FIELD_COUNT;
+            fields[row + FIELD_ID] = pool.ref(location.getId());
+            fields[row + FIELD_NAME] = pool.ref(location.getName());
+            fields[row + FIELD_TYPE] = pool.ref(location.getType());
+            fields[row + FIELD_STATE] = pool.ref(location.getState());
+            fields[row + FIELD_COUNTRY] = pool.ref(location.getCountry());
+            fields[row + FIELD_AIRPORT_CODE] = pool.ref(location.getAirportCode());
+            fields[row + FIELD_KEY] = pool.ref(keys[ord]);
+            if (!normalizeCode(location.getAirportCode()).isEmpty()) {
+                coded.add(ord);
+            }
+        }
+        coded.sort((a, b) -> {
+            int byCode = normalizeCode(source.get((int) order[a]).getAirportCode())
+                    .compareTo(normalizeCode(source.get((int) order[b]).getAirportCode()));
+            return byCode != 0 ? byCode : Integer.compare(a, b);
+        });
+        int[] codeIndex = coded.stream().mapToInt(Integer::intValue).toArray();
+        int[] idIndex = IntStream.range(0, n)
+                .filter(ord -> source.get((int) order[ord]).getId() != null)
+                .boxed()
+                .sorted(Comparator.comparing(ord -> source.get((int) order[ord]).getId()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        double[] points = new double[n * 3];
+        for (int ord = 0; ord < n; ord++) {
+            unitVector(latitudes[ord], longitudes[ord], points, ord * 3);
+        }
+        int[] tree = new int[n];
+        for (int ord = 0; ord < n; ord++) {
+            tree[ord] = ord;
+        }
+        buildTree(tree, points, 0, n, 0);
+        double[] treePoints = new double[n * 3];
+        for (int node = 0; node < n; node++) {
+            System.arraycopy(points, tree[node] * 3, treePoints, node * 3, 3);
+        }
+
+        // Counting sort of (gram, ordinal) pairs: dense gram ids and per-gram counts, then postings filled in
+        // ordinal order so that every posting list comes out sorted
+        GramIds gramIds = new GramIds(Math.max(16, n * 4));
+        int[] counts = new int[1024];
+        long[] scratch = new long[64];
+        for (int ord = 0; ord < n; ord++) {
+            scratch = ensureCapacity(scratch, keys[ord]);
+            int size = distinctGrams(keys[ord], scratch);
+            for (int g = 0; g < size; g++) {
+                int id = gramIds.idOf(scratch[g]);
+                if (id >= counts.length) {
+                    counts = Arrays.copyOf(counts, counts.length * 2);
+                }
+                counts[id]++;
+            }
+        }
+        int gramCount = gramIds.size();
+        long[] grams = gramIds.grams();
+        Arrays.sort(grams);
+        int[] slotOfId = new int[gramCount];
+        int[] postingOffsets = new int[gramCount + 1];
+        for (int slot = 0; slot < gramCount; slot++) {
+            int id = gramIds.idOf(grams[slot]);
+            slotOfId[id] = slot;
+            postingOffsets[slot + 1] = postingOffsets[slot] + counts[id];
+        }
+        int[] postings = new int[postingOffsets[gramCount]];
+        int[] fill = Arrays.copyOf(postingOffsets, gramCount);
+        for (int ord = 0; ord < n; ord++) {
+            int size = distinctGrams(keys[ord], scratch);
+            for (int g = 0; g < size; g++) {
+                postings[fill[slotOfId[gramIds.idOf(scratch[g])]]++] = ord;
+            }
+        }
+
+        long[] lengths = new long[SECTION_COUNT];
+        lengths[SECTION_LATITUDES] = 8L * n;
+        lengths[SECTION_LONGITUDES] = 8L * n;
+        lengths[SECTION_FIELDS] = 4L * fields.length;
+        lengths[SECTION_POOL_OFFSETS] = 4L * (pool.size() + 1);
+        lengths[SECTION_POOL_BYTES] = pool.byteLength();
+        lengths[SECTION_GRAMS] = 8L * grams.length;
+        lengths[SECTION_POSTING_OFFSETS] = 4L * postingOffsets.length;
+        lengths[SECTION_POSTINGS] = 4L * postings.length;
+        lengths[SECTION_CODE_INDEX] = 4L * codeIndex.length;
+        lengths[SECTION_TREE] = 4L * tree.length;
+        lengths[SECTION_TREE_POINTS] = 8L * treePoints.length;
+        lengths[SECTION_ID_INDEX] = 4L * idIndex.length;
+        long[] offsets = new long[SECTION_COUNT];
+        long end = align(HEADER_BYTES + 8L * SECTION_COUNT);
+        for (int s = 0; s < SECTION_COUNT; s++) {
+            offsets[s] = end;
+            end = align(end + lengths[s]);
+        }
+        if (end > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Gazetteer of " + end + " bytes exceeds the 2 GB format limit");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) end);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(SECTION_COUNT).putLong(0);
+        for (int s = 0; s < SECTION_COUNT; s++) {
+            buffer.putInt((int) offsets[s]).putInt((int) lengths[s]);
+        }
+        section(buffer, offsets[SECTION_LATITUDES]).asDoubleBuffer().put(latitudes);
+        section(buffer, offsets[SECTION_LONGITUDES]).asDoubleBuffer().put(longitudes);
+        section(buffer, offsets[SECTION_FIELDS]).asIntBuffer().put(fields);
+        pool.writeTo(section(buffer, offsets[SECTION_POOL_OFFSETS]), section(buffer, offsets[SECTION_POOL_BYTES]));
+        section(buffer, offsets[SECTION_GRAMS]).asLongBuffer().put(grams);
+        section(buffer, offsets[SECTION_POSTING_OFFSETS]).asIntBuffer().put(postingOffsets);
+        section(buffer, offsets[SECTION_POSTINGS]).asIntBuffer().put(postings);
+        section(buffer, offsets[SECTION_CODE_INDEX]).asIntBuffer().put(codeIndex);
+        section(buffer, offsets[SECTION_TREE]).asIntBuffer().put(tree);
+        section(buffer, offsets[SECTION_TREE_POINTS]).asDoubleBuffer().put(treePoints);
+        section(buffer, offsets[SECTION_ID_INDEX]).asIntBuffer().put(idIndex);
+        CRC32C checksum = new CRC32C();
+        ByteBuffer data = buffer.duplicate();
+        data.position((int) offsets[0]).limit((int) end);
+        checksum.update(data);
+        buffer.putLong(16, checksum.getValue());
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Arranges {@code tree[lo, hi)} as an implicit k-d tree: the median on the current axis sits in the middle of
+     * the range, with the lower and upper halves built recursively on the next axis.
+     */
+    private static void buildTree(int[] tree, double[] points, int lo, int hi, int axis) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            select(tree, points, lo, hi - 1, mid, axis);
+            buildTree(tree, points, lo, mid, (axis + 1) % 3);
+            lo = mid + 1;
+            axis = (axis + 1) % 3;
+        }
+    }
+
+    /** Three-way quickselect, so that many identical coordinates do not degrade to quadratic time. */
+    private static void select(int[] tree, double[] points, int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            double pivot = points[tree[(lo + hi) >>> 1] * 3 + axis];
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                double value = points[tree[i] * 3 + axis];
+                if (value < pivot) {
+                    swap(tree, lt++, i++);
+                } else if (value > pivot) {
+                    swap(tree, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt - 1;
+            } else if (k > gt) {
+                lo = gt + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, long offset) {
+        ByteBuffer section = buffer.duplicate();
+        section.position((int) offset);
+        return section.slice();
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static long[] ensureCapacity(long[] scratch, String key) {
+        int words = 1;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) == ' ') {
+                words++;
+            }
+        }
+        int required = key.length() + 3 * words + 3;
+        return required <= scratch.length ? scratch : new long[Math.max(required, scratch.length * 2)];
+    }
+
+    /** Writes the distinct grams of a key into {@code out} and returns their count. */
+    private static int distinctGrams(String key, long[] out) {
+        int size = 0;
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            out[size++] = KIND_TRIGRAM | trigram(key, i);
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (i == 0 || key.charAt(i - 1) == ' ') {
+                for (int end = i + 1; end <= Math.min(i + 3, key.length()) && key.charAt(end - 1) != ' '; end++) {
+                    long gram = chars(key, i, end);
+                    if (i == 0) {
+                        out[size++] = KIND_NAME_START | gram;
+                    }
+                    out[size++] = KIND_WORD_START | gram;
+                }
+            }
+        }
+        Arrays.sort(out, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || out[distinct - 1] != out[i]) {
+                out[distinct++] = out[i];
+            }
+        }
+        return distinct;
+    }
+
+    /** Deduplicated UTF-8 string pool; {@code null} is encoded as reference -1. */
+    private static final class StringPool {
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private long byteLength;
+
+        int ref(String value) {
+            if (value == null) {
+                return -1;
+            }
+            return refs.computeIfAbsent(value, v -> {
+                byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+                values.add(bytes);
+                byteLength += bytes.length;
+                return values.size() - 1;
+            });
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        long byteLength() {
+            return byteLength;
+        }
+
+        void writeTo(ByteBuffer offsets, ByteBuffer bytes) {
+            offsets.putInt(0);
+            for (byte[] value : values) {
+                bytes.put(value);
+                offsets.putInt(bytes.position());
+            }
+        }
+    }
+
+    /** Open-addressing map from gram to dense id, avoiding boxing while the index is built. */
+    private static final class GramIds {
+        private long[] keys;
+        private int[] ids;
+        private int size;
+
+        GramIds(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            keys = new long[capacity];
+            ids = new int[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int idOf(long gram) {
+            int mask = keys.length - 1;
+            int slot = mix(gram) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == gram) {
+                    return ids[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = gram;
+            ids[slot] = size++;
+            if (size * 2 > keys.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        long[] grams() {
+            long[] result = new long[size];
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0) {
+                    result[ids[slot]] = keys[slot];
+                }
+            }
+            return result;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[oldKeys.length * 2];
+            ids = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    ids[slot] = oldIds[i];
+                }
+            }
+        }
+
+        private static int mix(long value) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -3,40 +3,211 @@ package com.example.weatherapp;
 import com.example.weatherapp.model.Location;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Location search over a dataset that can be replaced while the application runs. Each dataset is an immutable
+ * {@link LocationIndex}, built in full off the request path and then published through a volatile field, so a lookup
+ * reads one consistent index without locking and a reload never delays it.
+ * <p>
+ * The dataset is the bundled {@code data/locations.json}, or the file or directory named by
+ * {@code weather.locations.gazetteer}: a gazetteer written by {@link GazetteerConverter} is memory-mapped, JSON and CSV
+ * files are indexed in memory, and the JSON and CSV files of a directory are merged in file name order. An external
+ * dataset is polled for changes and reloaded once it has stayed unchanged for a whole poll interval, so a file caught
+ * halfway through a copy is not indexed. A dataset that fails to load is counted and the previous one stays in service.
+ */
 @Service
 public class LocationService {
+    public static final int DEFAULT_SEARCH_LIMIT = 10;
+    public static final int MAX_SEARCH_LIMIT = 100;
+    public static final int DEFAULT_NEAREST_COUNT = 5;
+
     @Value("classpath:data/locations.json")
     private Resource locationsResource;
 
-    private List<Location> locations = new ArrayList<>();
+    @Value("${weather.locations.gazetteer:}")
+    private String gazetteerPath = "";
+
+    @Value("${weather.locations.watch:true}")
+    private boolean watch = true;
+
+    @Value("${weather.locations.fuzzy-candidates:" + LocationIndex.DEFAULT_FUZZY_CANDIDATES + "}")
+    private int fuzzyCandidates = LocationIndex.DEFAULT_FUZZY_CANDIDATES;
+
+    @Autowired
+    private WeatherMetrics metrics = new WeatherMetrics();
+
+    private volatile LocationIndex index = LocationIndex.build(Collections.emptyList());
+    // Fingerprints of the source files behind the published index and of the changed files waiting for the next poll
+    private List<String> loadedVersion = Collections.emptyList();
+    private List<String> pendingVersion;
 
     @PostConstruct
-    public void loadLocations() throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        locations = mapper.readValue(locationsResource.getInputStream(), new TypeReference<List<Location>>() {});
+    public synchronized void loadLocations() throws IOException {
+        if (!gazetteerPath.isEmpty()) {
+            Path source = Paths.get(gazetteerPath);
+            loadedVersion = fingerprint(source);
+            index = read(source);
+        } else {
+            ObjectMapper mapper = new ObjectMapper();
+            List<Location> locations = mapper.readValue(locationsResource.getInputStream(),
+                    new TypeReference<List<Location>>() {});
+            index = LocationIndex.build(locations);
+        }
+        // Follows reloads, since it reads whichever index is published
+        Gauge.builder("weather.locations.count", this, service -> service.index.size()).register(metrics.registry());
+    }
+
+    @Scheduled(initialDelayString = "${weather.locations.reload-interval:PT10S}",
+            fixedDelayString = "${weather.locations.reload-interval:PT10S}")
+    public void watchDataset() {
+        if (watch && !gazetteerPath.isEmpty()) {
+            reloadIfChanged();
+        }
+    }
+
+    /**
+     * Publishes a new index if the external dataset changed and has not changed since the previous call. Returns
+     * whether a new index was published.
+     */
+    synchronized boolean reloadIfChanged() {
+        Path source = Paths.get(gazetteerPath);
+        List<String> version;
+        try {
+            version = fingerprint(source);
+        } catch (IOException e) {
+            metrics.locationsReloaded("failure");
+            return false;
+        }
+        if (version.equals(loadedVersion)) {
+            pendingVersion = null;
+            return false;
+        }
+        if (!version.equals(pendingVersion)) {
+            pendingVersion = version;
+            return false;
+        }
+        pendingVersion = null;
+        // Files that fail to load are not retried until they change again; the current index stays in service
+        loadedVersion = version;
+        try {
+            index = read(source);
+        } catch (IOException | RuntimeException e) {
+            metrics.locationsReloaded("failure");
+            return false;
+        }
+        metrics.locationsReloaded(WeatherMetrics.SUCCESS);
+        return true;
+    }
+
+    /** Size, modification time and file identity of every source file, which change when a file is rewritten. */
+    private static List<String> fingerprint(Path source) throws IOException {
+        List<String> version = new ArrayList<>();
+        for (Path file : sourceFiles(source)) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            version.add(file.getFileName() + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis()
+                    + ":" + attributes.fileKey());
+        }
+        return version;
+    }
+
+    private static LocationIndex read(Path source) throws IOException {
+        if (!Files.isDirectory(source) && !isLocationList(source)) {
+            return LocationIndex.open(source);
+        }
+        List<Location> locations = new ArrayList<>();
+        for (Path file : sourceFiles(source)) {
+            locations.addAll(GazetteerConverter.read(file));
+        }
+        return LocationIndex.build(locations);
+    }
+
+    private static List<Path> sourceFiles(Path source) throws IOException {
+        if (!Files.isDirectory(source)) {
+            return List.of(source);
+        }
+        try (Stream<Path> files = Files.list(source)) {
+            return files.filter(LocationService::isLocationList).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isLocationList(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".json") || name.endsWith(".csv");
+    }
+
+    /** The dataset currently in service; read several values from one snapshot to see them consistently. */
+    public LocationIndex dataset() {
+        return index;
     }
 
     public List<Location> search(String query) {
-        String q = query.toLowerCase(Locale.ROOT);
-        return locations.stream()
-                .filter(loc -> loc.getName().toLowerCase(Locale.ROOT).contains(q)
-                        || (loc.getAirportCode() != null && loc.getAirportCode().toLowerCase(Locale.ROOT).contains(q)))
-                .collect(Collectors.toList());
+        return search(query, DEFAULT_SEARCH_LIMIT);
+    }
+
+    /**
+     * Returns up to {@code limit} locations whose name or airport code matches the query, best match first, followed
+     * by names within a typo or two of it when there is room.
+     */
+    public List<Location> search(String query, int limit) {
+        return search(index, query, limit);
+    }
+
+    public List<Location> search(LocationIndex dataset, String query, int limit) {
+        int searchLimit = Math.min(limit, MAX_SEARCH_LIMIT);
+        return metrics.timeLookup("search", () -> dataset.search(query, searchLimit, fuzzyCandidates));
+    }
+
+    /** Returns up to {@code k} locations closest to the given coordinates, nearest first. */
+    public List<Location> nearest(double latitude, double longitude, int k) {
+        return nearest(index, latitude, longitude, k);
+    }
+
+    public List<Location> nearest(LocationIndex dataset, double latitude, double longitude, int k) {
+        return metrics.timeLookup("nearest", () -> dataset.nearest(latitude, longitude, Math.min(k, MAX_SEARCH_LIMIT)));
+    }
+
+    /** Strong ETag of a dataset: search results are deterministic for a given dataset and request. */
+    public static String datasetETag(LocationIndex dataset) {
+        return "\"" + Long.toHexString(dataset.checksum()) + "\"";
+    }
+
+    /**
+     * Key identifying the result of {@link #search(LocationIndex, String, int)}: queries that normalize alike share
+     * it, and it changes with the dataset.
+     */
+    public static String searchKey(LocationIndex dataset, String query, int limit) {
+        return dataset.checksum() + "|" + limit + "|" + LocationIndex.normalizeCode(query) + "|" + LocationIndex.normalize(query);
+    }
+
+    public Location findById(String id) {
+        return id == null ? null : index.findById(id);
     }
 
     // Setter for test injection
     void setLocationsResource(Resource resource) {
         this.locationsResource = resource;
     }
+
+    void setGazetteerPath(String gazetteerPath) {
+        this.gazetteerPath = gazetteerPath;
+    }
 }
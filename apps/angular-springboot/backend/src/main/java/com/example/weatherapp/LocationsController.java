@@ -2,29 +2,93 @@ package com.example.weatherapp;
 
 import com.example.weatherapp.model.LocationsResponse;
 import com.example.weatherapp.model.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
 @RestController
 @RequestMapping("/api/v1/locations")
 public class LocationsController {
     @Autowired
     private LocationService locationService;
 
+    @Autowired
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private SearchResponseCache searchResponses;
+
+    // Search and nearest results only change when the dataset changes, so edges can cache them for a long time
+    @Value("${weather.locations.cache-max-age:1h}")
+    private Duration cacheMaxAge = Duration.ofHours(1);
+
     @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> searchLocations(@RequestParam(required = false) String query) {
+    public ResponseEntity<?> searchLocations(@RequestParam(required = false) String query,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         if (query == null || query.isBlank()) {
             return ResponseEntity.badRequest().body(new ErrorResponse("Missing required query parameter: 'query'"));
         }
-        var results = locationService.search(query);
+        if (limit != null && (limit < 1 || limit > LocationService.MAX_SEARCH_LIMIT)) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Invalid 'limit' parameter: must be between 1 and " + LocationService.MAX_SEARCH_LIMIT));
+        }
+        int searchLimit = limit == null ? LocationService.DEFAULT_SEARCH_LIMIT : limit;
+        // One snapshot for the key, the results and the ETag, even if the dataset is replaced meanwhile
+        LocationIndex dataset = locationService.dataset();
+        // Results depend only on the dataset, so a client holding its ETag is answered without searching
+        String etag = LocationService.datasetETag(dataset);
+        String notModified = SerializedResponse.notModifiedETag(ifNoneMatch, etag);
+        if (notModified != null) {
+            return cacheable(dataset).eTag(notModified).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        String key = LocationService.searchKey(dataset, query, searchLimit);
+        SerializedResponse response = searchResponses.get(key);
+        if (response == null) {
+            var results = locationService.search(dataset, query, searchLimit);
+            if (results.isEmpty()) {
+                return ResponseEntity.status(404).body(new ErrorResponse("No locations found matching the search query."));
+            }
+            response = SerializedResponse.of(objectMapper, new LocationsResponse(results));
+            searchResponses.put(key, response);
+        }
+        return response.body(cacheable(dataset), etag, acceptEncoding);
+    }
+
+    @GetMapping(value = "/nearest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> nearestLocations(@RequestParam(required = false) Double latitude,
+                                              @RequestParam(required = false) Double longitude,
+                                              @RequestParam(required = false) Integer k) {
+        if (latitude == null || longitude == null || Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Missing or invalid coordinates."));
+        }
+        if (k != null && (k < 1 || k > LocationService.MAX_SEARCH_LIMIT)) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Invalid 'k' parameter: must be between 1 and " + LocationService.MAX_SEARCH_LIMIT));
+        }
+        LocationIndex dataset = locationService.dataset();
+        var results = locationService.nearest(dataset, latitude, longitude, k == null ? LocationService.DEFAULT_NEAREST_COUNT : k);
         if (results.isEmpty()) {
-            return ResponseEntity.status(404).body(new ErrorResponse("No locations found matching the search query."));
+            return ResponseEntity.status(404).body(new ErrorResponse("No locations found."));
         }
-        return ResponseEntity.ok(new LocationsResponse(results));
+        return cacheable(dataset).body(new LocationsResponse(results));
+    }
+
+    /** 200 response validated by the dataset ETag; Spring MVC answers a matching If-None-Match with 304. */
+    private ResponseEntity.BodyBuilder cacheable(LocationIndex dataset) {
+        return ResponseEntity.ok()
+                .eTag(LocationService.datasetETag(dataset))
+                .cacheControl(CacheControl.maxAge(cacheMaxAge.getSeconds(), TimeUnit.SECONDS).cachePublic());
     }
 }
@@ -0,0 +1,92 @@
+package com.example.weatherapp;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Registers the forecast and search response caches, the forecast disk store, the Open-Meteo circuit breaker and
+ * in-flight HTTP requests with Micrometer.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder forecastCacheMetrics(ForecastCache forecastCache) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, forecastCache.caffeine(), "forecasts");
+    }
+
+    @Bean
+    public MeterBinder forecastStoreMetrics(ForecastStore forecastStore) {
+        return registry -> {
+            Gauge.builder("weather.cache.disk.bytes", forecastStore, ForecastStore::sizeBytes).register(registry);
+            Gauge.builder("weather.cache.disk.restored", forecastStore, ForecastStore::restored).register(registry);
+            FunctionCounter.builder("weather.cache.disk.write.errors", forecastStore, ForecastStore::writeErrors)
+                    .register(registry);
+            FunctionCounter.builder("weather.cache.disk.write.dropped", forecastStore, ForecastStore::dropped)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder searchResponseCacheMetrics(SearchResponseCache searchResponseCache) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, searchResponseCache.caffeine(), "location-search-responses");
+    }
+
+    @Bean
+    public MeterBinder circuitBreakerMetrics(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry);
+    }
+
+    /** Counts requests in progress, including async requests until their response is complete. */
+    @Bean
+    public OncePerRequestFilter inFlightRequestFilter(WeatherMetrics metrics) {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                metrics.httpStarted();
+                boolean async = false;
+                try {
+                    chain.doFilter(request, response);
+                    async = request.isAsyncStarted();
+                    if (async) {
+                        request.getAsyncContext().addListener(new AsyncListener() {
+                            @Override
+                            public void onComplete(AsyncEvent event) {
+                                metrics.httpFinished();
+                            }
+
+                            @Override
+                            public void onTimeout(AsyncEvent event) {}
+
+                            @Override
+                            public void onError(AsyncEvent event) {}
+
+                            @Override
+                            public void onStartAsync(AsyncEvent event) {}
+                        });
+                    }
+                } finally {
+                    if (!async) {
+                        metrics.httpFinished();
+                    }
+                }
+            }
+        };
+    }
+}
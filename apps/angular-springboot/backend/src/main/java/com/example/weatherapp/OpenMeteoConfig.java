@@ -0,0 +1,80 @@
+package com.example.weatherapp;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP client and resilience settings for calls to the Open-Meteo API.
+ */
+@Configuration
+public class OpenMeteoConfig {
+
+    @Bean
+    public RestTemplate openMeteoRestTemplate(RestTemplateBuilder builder,
+                                              @Value("${weather.upstream.connect-timeout:2s}") Duration connectTimeout,
+                                              @Value("${weather.upstream.read-timeout:5s}") Duration readTimeout) {
+        return builder
+                .setConnectTimeout(connectTimeout)
+                .setReadTimeout(readTimeout)
+                .build();
+    }
+
+    /**
+     * Pooled, keep-alive HTTP/2 client used by the non-blocking execution mode. Responses are handled on a small
+     * fixed pool, so the number of in-flight upstream requests is not tied to the number of threads.
+     */
+    @Bean
+    public HttpClient openMeteoHttpClient(@Value("${weather.upstream.connect-timeout:2s}") Duration connectTimeout,
+                                          @Value("${weather.upstream.async-threads:4}") int asyncThreads) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .executor(Executors.newFixedThreadPool(asyncThreads, runnable -> {
+                    Thread thread = new Thread(runnable, "open-meteo-http");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+    }
+
+    /** Budget for Open-Meteo requests shared by every request thread, background refresh and batch call. */
+    @Bean
+    public TokenBucket openMeteoRateLimit(@Value("${weather.upstream.rate-limit.requests-per-second:10}") double requestsPerSecond,
+                                          @Value("${weather.upstream.rate-limit.burst:20}") int burst) {
+        return new TokenBucket(requestsPerSecond, burst);
+    }
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry() {
+        return CircuitBreakerRegistry.ofDefaults();
+    }
+
+    @Bean
+    public CircuitBreaker openMeteoCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry,
+                                                  @Value("${weather.upstream.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+                                                  @Value("${weather.upstream.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+                                                  @Value("${weather.upstream.circuit-breaker.minimum-calls:10}") int minimumCalls,
+                                                  @Value("${weather.upstream.circuit-breaker.wait-in-open-state:30s}") Duration waitInOpenState,
+                                                  @Value("${weather.upstream.circuit-breaker.slow-call-threshold:3s}") Duration slowCallThreshold) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(waitInOpenState)
+                .slowCallDurationThreshold(slowCallThreshold)
+                .slowCallRateThreshold(100)
+                .permittedNumberOfCallsInHalfOpenState(2)
+                .build();
+        return circuitBreakerRegistry.circuitBreaker("openMeteo", config);
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming parser for Open-Meteo forecast responses.
+ * <p>
+ * The upstream body is read token by token straight into primitive columns: no intermediate String, no JSON tree and
+ * no per-value boxing. Open-Meteo returns one array per variable; of the daily time axis only the first value is kept,
+ * and the hourly one is reduced to a start and step unless a daylight saving change makes it uneven. The length of the
+ * time axis defines the number of rows.
+ */
+public class OpenMeteoParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int HOUR_SECONDS = 3600;
+
+    public DailySeries parseWeekly(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            startObject(parser);
+            return readWeekly(parser);
+        }
+    }
+
+    /**
+     * Parses the response to a multi-coordinate request: Open-Meteo answers with an array holding one forecast per
+     * coordinate in request order, or with a single object when only one coordinate was sent.
+     */
+    public List<DailySeries> parseWeeklyBatch(InputStream body) throws IOException {
+        List<DailySeries> results = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            JsonToken root = parser.nextToken();
+            if (root == JsonToken.START_OBJECT) {
+                results.add(readWeekly(parser));
+            } else if (root == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    results.add(readWeekly(parser));
+                }
+            } else {
+                throw new JsonParseException(parser, "Expected a JSON object or array from Open-Meteo");
+            }
+        }
+        return results;
+    }
+
+    private static DailySeries readWeekly(JsonParser parser) throws IOException {
+        double latitude = 0;
+        double longitude = 0;
+        DailyColumns daily = new DailyColumns();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "latitude":
+                    latitude = parser.getValueAsDouble();
+                    break;
+                case "longitude":
+                    longitude = parser.getValueAsDouble();
+                    break;
+                case "daily":
+                    readDaily(parser, daily);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new DailySeries(latitude, longitude, daily.start, daily.max.toArray(daily.count),
+                daily.min.toArray(daily.count), daily.precipitation.toArray(daily.count), daily.codes.toByteArray(daily.count));
+    }
+
+    public HourlySeries parseHourly(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            startObject(parser);
+            HourlySeries series = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("hourly".equals(field)) {
+                    series = readHourly(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return series != null ? series : new HourlySeries(null, HOUR_SECONDS, new float[0], new float[0], new byte[0]);
+        }
+    }
+
+    /** Reads the {@code daily} object; the length of its time axis is the number of days. */
+    private static void readDaily(JsonParser parser, DailyColumns daily) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String column = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY || !isDailyColumn(column)) {
+                parser.skipChildren();
+                continue;
+            }
+            int i = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                switch (column) {
+                    case "time":
+                        if (i == 0) {
+                            daily.start = LocalDate.parse(parser.getValueAsString());
+                        }
+                        break;
+                    case "weathercode":
+                        daily.codes.set(i, parser.getValueAsInt());
+                        break;
+                    case "temperature_2m_max":
+                        daily.max.set(i, (float) parser.getValueAsDouble());
+                        break;
+                    case "temperature_2m_min":
+                        daily.min.set(i, (float) parser.getValueAsDouble());
+                        break;
+                    default:
+                        daily.precipitation.set(i, (float) parser.getValueAsDouble());
+                }
+                i++;
+            }
+            if ("time".equals(column)) {
+                daily.count = i;
+            }
+        }
+    }
+
+    /** Reads the {@code hourly} object; the length of its time axis is the number of rows. */
+    private static HourlySeries readHourly(JsonParser parser) throws IOException {
+        ForecastValues.Column temperatures = new ForecastValues.Column();
+        ForecastValues.Column precipitation = new ForecastValues.Column();
+        ForecastValues.Column codes = new ForecastValues.Column();
+        long[] times = new long[0];
+        int hourCount = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String column = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY || !isHourlyColumn(column)) {
+                parser.skipChildren();
+                continue;
+            }
+            int i = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if ("time".equals(column)) {
+                    if (i == times.length) {
+                        times = Arrays.copyOf(times, Math.max(2 * i, 192));
+                    }
+                    // Local time, read as if it were UTC; HourlySeries checks the spacing
+                    times[i] = LocalDateTime.parse(parser.getValueAsString()).toEpochSecond(ZoneOffset.UTC);
+                } else if ("temperature_2m".equals(column)) {
+                    temperatures.set(i, (float) parser.getValueAsDouble());
+                } else if ("weathercode".equals(column)) {
+                    codes.set(i, parser.getValueAsInt());
+                } else {
+                    precipitation.set(i, (float) parser.getValueAsDouble());
+                }
+                i++;
+            }
+            if ("time".equals(column)) {
+                hourCount = i;
+            }
+        }
+        return HourlySeries.of(Arrays.copyOf(times, hourCount), temperatures.toArray(hourCount),
+                precipitation.toArray(hourCount), codes.toByteArray(hourCount));
+    }
+
+    private static boolean isDailyColumn(String column) {
+        switch (column) {
+            case "time":
+            case "weathercode":
+            case "temperature_2m_max":
+            case "temperature_2m_min":
+            case "precipitation_probability_max":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isHourlyColumn(String column) {
+        return "time".equals(column) || "temperature_2m".equals(column) || "precipitation".equals(column)
+                || "weathercode".equals(column);
+    }
+
+    /** Daily columns collected while the coordinates, which may come before or after them, are still unknown. */
+    private static final class DailyColumns {
+        final ForecastValues.Column max = new ForecastValues.Column();
+        final ForecastValues.Column min = new ForecastValues.Column();
+        final ForecastValues.Column precipitation = new ForecastValues.Column();
+        final ForecastValues.Column codes = new ForecastValues.Column();
+        LocalDate start;
+        int count;
+    }
+
+    private static void startObject(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object from Open-Meteo");
+        }
+    }
+}
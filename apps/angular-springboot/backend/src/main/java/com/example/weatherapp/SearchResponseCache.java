@@ -0,0 +1,36 @@
+package com.example.weatherapp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serialized location search responses, keyed by {@link LocationService#searchKey}, so repeated queries skip both the
+ * index and Jackson. Bounded by the bytes the responses retain.
+ */
+@Component
+public class SearchResponseCache {
+    private final Cache<String, SerializedResponse> cache;
+
+    public SearchResponseCache(@Value("${weather.locations.response-cache-bytes:16777216}") long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<String, SerializedResponse>weigher((key, response) -> key.length() * 2 + response.size())
+                .recordStats()
+                .build();
+    }
+
+    public SerializedResponse get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(String key, SerializedResponse response) {
+        cache.put(key, response);
+    }
+
+    /** The underlying Caffeine cache, for metrics binding. */
+    Cache<String, SerializedResponse> caffeine() {
+        return cache;
+    }
+}
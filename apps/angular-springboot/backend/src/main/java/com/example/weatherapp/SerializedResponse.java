@@ -0,0 +1,142 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A JSON response body serialized once, together with a pre-compressed gzip variant, so cache hits are written to the
+ * socket as-is instead of going through Jackson and on-the-fly compression on every request.
+ * <p>
+ * Brotli is not offered: the JDK has no encoder for it and the gzip variant already removes the per-request cost.
+ */
+public final class SerializedResponse {
+    // Below roughly one packet gzip saves nothing worth the client's decompression
+    static final int MIN_GZIP_BYTES = 1024;
+
+    private final byte[] identity;
+    private final byte[] gzip;
+
+    private SerializedResponse(byte[] identity, byte[] gzip) {
+        this.identity = identity;
+        this.gzip = gzip;
+    }
+
+    public static SerializedResponse of(ObjectMapper mapper, Object body) {
+        byte[] identity;
+        try {
+            identity = mapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + body.getClass().getSimpleName(), e);
+        }
+        return new SerializedResponse(identity, identity.length < MIN_GZIP_BYTES ? null : gzip(identity));
+    }
+
+    /** Bytes retained by this response, for cache weighing. */
+    public int size() {
+        return identity.length + (gzip == null ? 0 : gzip.length);
+    }
+
+    /**
+     * Completes {@code response} with the variant negotiated from {@code acceptEncoding}. The bodies are shared, so
+     * writing a hit allocates only the response headers. The gzip variant's bytes differ from the identity body, so it
+     * is sent with its own strong {@code etag}, suffixed with {@code -gzip}; If-None-Match then matches the encoding
+     * the client actually stored. {@code etag} may be {@code null} for responses without a validator.
+     */
+    public ResponseEntity<byte[]> body(ResponseEntity.BodyBuilder response, String etag, String acceptEncoding) {
+        response.contentType(MediaType.APPLICATION_JSON).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip != null && acceptsGzip(acceptEncoding)) {
+            if (etag != null) {
+                response.eTag(gzipETag(etag));
+            }
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").contentLength(gzip.length).body(gzip);
+        }
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        return response.contentLength(identity.length).body(identity);
+    }
+
+    /** The entity tag of the gzip variant: {@code "v"} becomes {@code "v-gzip"}. */
+    static String gzipETag(String etag) {
+        int end = etag.lastIndexOf('"');
+        return end <= 0 ? etag + "-gzip" : etag.substring(0, end) + "-gzip\"";
+    }
+
+    /**
+     * The variant of {@code etag} (identity or gzip) listed in an {@code If-None-Match} header, or {@code null} when
+     * neither is, so a conditional request can be answered with 304 before the body is built.
+     */
+    public static String notModifiedETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        String gzipETag = gzipETag(etag);
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return etag;
+            }
+            if (candidate.equals(gzipETag)) {
+                return gzipETag;
+            }
+        }
+        return null;
+    }
+
+    /** Whether an {@code Accept-Encoding} header allows gzip, honouring {@code q=0} and the {@code *} wildcard. */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            int semicolon = coding.indexOf(';');
+            String name = (semicolon < 0 ? coding : coding.substring(0, semicolon)).trim();
+            boolean allowed = semicolon < 0 || !isZeroQuality(coding.substring(semicolon + 1));
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                return allowed;
+            }
+            if (name.equals("*")) {
+                wildcard = allowed;
+            }
+        }
+        return wildcard;
+    }
+
+    private static boolean isZeroQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("q")) {
+                try {
+                    return Double.parseDouble(pair[1].trim()) == 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        // Compressed once per cached body, so spend the CPU on the best ratio
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.weatherapp;
+
+/**
+ * Temperature units offered by the forecast endpoints. Forecasts are fetched and cached in Celsius and converted when
+ * a response is built, so one upstream call serves every unit.
+ */
+public enum TemperatureUnit {
+    CELSIUS("celsius"),
+    FAHRENHEIT("fahrenheit");
+
+    private final String label;
+
+    TemperatureUnit(String label) {
+        this.label = label;
+    }
+
+    /** Name used in responses, matching Open-Meteo's {@code temperature_unit} values. */
+    public String label() {
+        return label;
+    }
+
+    /** Maps the {@code units} request parameter; anything other than Fahrenheit or imperial means Celsius. */
+    public static TemperatureUnit of(String units) {
+        if ("F".equalsIgnoreCase(units) || "imperial".equalsIgnoreCase(units) || "fahrenheit".equalsIgnoreCase(units)) {
+            return FAHRENHEIT;
+        }
+        return CELSIUS;
+    }
+
+    /** Converts a cached Celsius value, rounded to the 0.1 degree resolution of the upstream data. */
+    public double fromCelsius(float celsius) {
+        return ForecastValues.round(this == FAHRENHEIT ? celsius * 9 / 5 + 32 : celsius);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.weatherapp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket, shared by any number of threads. It is kept as the generic cell rate algorithm: a single
+ * atomic holds the time at which the bucket would be full again, so taking a token is one compare-and-set and idle
+ * buckets need no refill work.
+ */
+public final class TokenBucket {
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        this(tokensPerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double tokensPerSecond, int capacity, LongSupplier clock) {
+        if (tokensPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Token bucket needs a positive rate and capacity");
+        }
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.burstNanos = nanosPerToken * capacity;
+        this.clock = clock;
+        this.fullAt = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Reserves a token that is available now or within {@code maxWaitNanos}. Returns how long the caller must wait
+     * before using it, or, when no token can be reserved in time, minus the wait that would have been needed.
+     */
+    public long tryReserve(long maxWaitNanos) {
+        while (true) {
+            long now = clock.getAsLong();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + nanosPerToken;
+            long wait = Math.max(0, next - now - burstNanos);
+            if (wait > maxWaitNanos) {
+                return -wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return wait;
+            }
+        }
+    }
+
+    /** Takes a token if one is available right now. */
+    public boolean tryAcquire() {
+        return tryReserve(0) == 0;
+    }
+}
@@ -2,10 +2,17 @@ package com.example.weatherapp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class WeatherAppApplication {
     public static void main(String[] args) {
-        SpringApplication.run(WeatherAppApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(WeatherAppApplication.class, args);
+        // Training run of the cds build profile: stop once started so the JVM archives the classes loaded so far
+        if (Boolean.getBoolean("weather.cds.training")) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
@@ -1,47 +1,256 @@
 package com.example.weatherapp;
 
+import com.example.weatherapp.model.BatchForecastRequest;
+import com.example.weatherapp.model.BatchForecastResponse;
+import com.example.weatherapp.model.ErrorResponse;
+import com.example.weatherapp.model.Location;
+import com.example.weatherapp.model.WeeklyForecastResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Forecast endpoints. With {@code weather.execution-mode=async} upstream calls are made with the non-blocking client
+ * and the servlet thread is released while they are in flight; the default {@code sync} mode blocks as before and
+ * answers on the request thread, without an async dispatch. The {@code /week} and {@code /hourly} handlers therefore
+ * return either a {@link ResponseEntity} or a {@link CompletableFuture} of one; Spring MVC picks the return value
+ * handler by the runtime type.
+ */
 @RestController
 @RequestMapping("/api/v1/forecast")
 public class WeatherController {
+    static final int MAX_BATCH_LOCATIONS = 100;
+
     @Autowired
     private WeatherService weatherService;
 
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private ForecastPrewarmer prewarmer;
+
+    @Autowired
+    private ForecastSubscriptions subscriptions;
+
+    @Autowired
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${weather.execution-mode:sync}")
+    private String executionMode;
+
     @GetMapping(value = "/week", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getWeeklyForecast(
+    public Object getWeeklyForecast(
             @RequestParam(required = false) Double latitude,
             @RequestParam(required = false) Double longitude,
-            @RequestParam(required = false, defaultValue = "metric") String units) {
+            @RequestParam(required = false, defaultValue = "metric") String units,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         if (latitude == null || longitude == null) {
             return ResponseEntity.badRequest().body(new com.example.weatherapp.model.ErrorResponse("Missing or invalid coordinates."));
         }
-        var result = weatherService.getWeeklyForecast(latitude, longitude, units);
-        if (result == null) {
-            return ResponseEntity.status(503).body(new com.example.weatherapp.model.ErrorResponse("Weather service is currently unavailable."));
-        }
-        // Return the full response object (with forecast field)
-        return ResponseEntity.ok(result);
+        prewarmer.record(weatherService.weeklyKey(latitude, longitude));
+        TemperatureUnit unit = TemperatureUnit.of(units);
+        Function<ForecastCache.Entry<DailySeries>, ResponseEntity<?>> respond = result -> {
+            if (result == null) {
+                return ResponseEntity.status(503).body(new com.example.weatherapp.model.ErrorResponse("Weather service is currently unavailable."));
+            }
+            // Return the full response object (with forecast field)
+            return cacheable(fresh(result), result, unit.label(), series -> series.toResponse(unit), acceptEncoding);
+        };
+        return isAsync()
+                ? weatherService.getWeeklyForecastEntryAsync(latitude, longitude).thenApply(respond)
+                : respond.apply(weatherService.getWeeklyForecastEntry(latitude, longitude));
     }
 
-    @GetMapping(value = "/hourly", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getHourlyForecast(
+    /**
+     * Hourly forecast for the next {@code hours} hours (up to {@value WeatherService#MAX_HOURLY_ROWS}) with the
+     * selected {@code fields}. Sent as one JSON document, or as one row per line when NDJSON is accepted; anything but
+     * the default 24 rows is streamed from the cached series instead of being buffered.
+     */
+    @GetMapping(value = "/hourly", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Object getHourlyForecast(
             @RequestParam(required = false) Double lat,
-            @RequestParam(required = false) Double lon) {
+            @RequestParam(required = false) Double lon,
+            @RequestParam(required = false, defaultValue = "metric") String units,
+            @RequestParam(required = false, defaultValue = "24") int hours,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         if (lat == null || lon == null) {
-            return ResponseEntity.badRequest().body(new com.example.weatherapp.model.ErrorResponse("Invalid or missing parameters"));
+            return jsonError(400, "Invalid or missing parameters");
+        }
+        if (hours < 1 || hours > WeatherService.MAX_HOURLY_ROWS) {
+            return jsonError(400, "hours must be between 1 and " + WeatherService.MAX_HOURLY_ROWS);
+        }
+        Set<HourlyRows.Field> selected;
+        try {
+            selected = HourlyRows.Field.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return jsonError(400, e.getMessage());
+        }
+        boolean ndjson = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+        prewarmer.record(weatherService.hourlyKey(lat, lon));
+        TemperatureUnit unit = TemperatureUnit.of(units);
+        Function<ForecastCache.Entry<HourlySeries>, ResponseEntity<?>> respond = result -> {
+            if (result == null) {
+                return jsonError(502, "Upstream weather provider error");
+            }
+            ResponseEntity.BodyBuilder response = fresh(result).varyBy(HttpHeaders.ACCEPT);
+            if (!ndjson && hours == WeatherService.HOURLY_ROWS && selected.equals(HourlyRows.DEFAULT_FIELDS)) {
+                return cacheable(response, result, unit.label(),
+                        series -> series.toResponse(unit, WeatherService.HOURLY_ROWS), acceptEncoding);
+            }
+            HourlyRows rows = new HourlyRows(result.getValue(), unit, hours, selected);
+            if (ndjson) {
+                return response.eTag(result.getETag("ndjson")).contentType(MediaType.APPLICATION_NDJSON).body(rows);
+            }
+            return response.contentType(MediaType.APPLICATION_JSON).body(rows);
+        };
+        return isAsync()
+                ? weatherService.getHourlyForecastEntryAsync(lat, lon).thenApply(respond)
+                : respond.apply(weatherService.getHourlyForecastEntry(lat, lon));
+    }
+
+    /**
+     * Weekly forecasts for up to {@value #MAX_BATCH_LOCATIONS} locations, given by id or by coordinates. Locations
+     * are resolved first and then fetched together, so a whole dashboard costs one or two upstream requests.
+     */
+    @PostMapping(value = "/week/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getWeeklyForecasts(@RequestBody(required = false) BatchForecastRequest request) {
+        if (request == null || request.getLocations() == null || request.getLocations().isEmpty()) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Missing required field: 'locations'"));
+        }
+        if (request.getLocations().size() > MAX_BATCH_LOCATIONS) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Too many locations: at most " + MAX_BATCH_LOCATIONS + " per request"));
+        }
+        List<BatchForecastResponse.Result> results = new ArrayList<>();
+        List<BatchForecastResponse.Result> resolved = new ArrayList<>();
+        for (BatchForecastRequest.Item item : request.getLocations()) {
+            BatchForecastResponse.Result result = new BatchForecastResponse.Result();
+            result.setId(item.getId());
+            results.add(result);
+            if (item.getId() != null) {
+                Location location = locationService.findById(item.getId());
+                if (location == null) {
+                    result.setError("Unknown location id.");
+                    continue;
+                }
+                result.setLatitude(location.getLatitude());
+                result.setLongitude(location.getLongitude());
+            } else if (item.getLatitude() != null && item.getLongitude() != null) {
+                result.setLatitude(item.getLatitude());
+                result.setLongitude(item.getLongitude());
+            } else {
+                result.setError("Missing or invalid coordinates.");
+                continue;
+            }
+            resolved.add(result);
+        }
+        double[] latitudes = resolved.stream().mapToDouble(BatchForecastResponse.Result::getLatitude).toArray();
+        double[] longitudes = resolved.stream().mapToDouble(BatchForecastResponse.Result::getLongitude).toArray();
+        String units = request.getUnits() == null ? "metric" : request.getUnits();
+        for (int i = 0; i < resolved.size(); i++) {
+            prewarmer.record(weatherService.weeklyKey(latitudes[i], longitudes[i]));
         }
-        var result = weatherService.getHourlyForecast(lat, lon);
-        if (result == null) {
-            return ResponseEntity.status(502).body(new com.example.weatherapp.model.ErrorResponse("Upstream weather provider error"));
+        List<WeeklyForecastResponse> forecasts = weatherService.getWeeklyForecasts(latitudes, longitudes, units);
+        for (int i = 0; i < resolved.size(); i++) {
+            if (forecasts.get(i) == null) {
+                resolved.get(i).setError("Weather service is currently unavailable.");
+            } else {
+                resolved.get(i).setForecast(forecasts.get(i));
+            }
         }
-        // Return the full response object (with hourly field)
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok(new BatchForecastResponse(results));
+    }
+
+    /**
+     * Server-sent events for the weekly ({@code forecast=week}) or hourly forecast at a location: the current
+     * forecast, then its changes as they happen. Subscribers of the same location share one upstream poll; see
+     * {@link ForecastSubscriptions}.
+     */
+    @GetMapping(value = "/subscribe", produces = {MediaType.TEXT_EVENT_STREAM_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ResponseBodyEmitter> subscribe(
+            @RequestParam(required = false) Double latitude,
+            @RequestParam(required = false) Double longitude,
+            @RequestParam(required = false, defaultValue = "week") String forecast,
+            @RequestParam(required = false, defaultValue = "metric") String units,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (latitude == null || longitude == null) {
+            return streamError(400, "Missing or invalid coordinates.");
+        }
+        ForecastKey key;
+        if ("week".equals(forecast)) {
+            key = weatherService.weeklyKey(latitude, longitude);
+        } else if ("hourly".equals(forecast)) {
+            key = weatherService.hourlyKey(latitude, longitude);
+        } else {
+            return streamError(400, "forecast must be 'week' or 'hourly'");
+        }
+        SseEmitter events = subscriptions.subscribe(key, TemperatureUnit.of(units), lastEventId);
+        if (events == null) {
+            return streamError(503, "Too many forecast subscriptions, try again later.");
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(events);
+    }
+
+    /**
+     * 200 response with the cache entry's ETag and its remaining freshness as max-age. Spring MVC answers a matching
+     * {@code If-None-Match} with 304 and no body.
+     */
+    private static ResponseEntity.BodyBuilder fresh(ForecastCache.Entry<?> entry) {
+        return ResponseEntity.ok()
+                .eTag(entry.getETag())
+                .cacheControl(CacheControl.maxAge(entry.getMaxAgeSeconds(), TimeUnit.SECONDS).cachePublic());
+    }
+
+    /** Completes {@code response} with the JSON bytes kept with the entry for this {@code variant} of the response. */
+    private <T> ResponseEntity<?> cacheable(ResponseEntity.BodyBuilder response, ForecastCache.Entry<T> entry,
+                                            String variant, Function<T, Object> toBody, String acceptEncoding) {
+        SerializedResponse body = entry.serialized(variant, value -> SerializedResponse.of(objectMapper, toBody.apply(value)));
+        return body.body(response, entry.getETag(), acceptEncoding);
+    }
+
+    /** An error body with a fixed JSON content type, so it is written even when only NDJSON was accepted. */
+    private static ResponseEntity<?> jsonError(int status, String message) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(new ErrorResponse(message));
+    }
+
+    /** An error for the event stream endpoint, sent as a plain JSON body since an emitter is the declared result. */
+    private static ResponseEntity<ResponseBodyEmitter> streamError(int status, String message) {
+        ResponseBodyEmitter body = new ResponseBodyEmitter();
+        try {
+            body.send(new ErrorResponse(message), MediaType.APPLICATION_JSON);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        body.complete();
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private boolean isAsync() {
+        return "async".equalsIgnoreCase(executionMode);
     }
 }
@@ -0,0 +1,169 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.DateTimeException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Application meters for the forecast and location search hot paths, published with the actuator's Prometheus
+ * endpoint alongside the standard HTTP server, JVM, cache and circuit breaker metrics.
+ * <ul>
+ *     <li>{@code weather.upstream.requests}: Open-Meteo call latency by {@code kind} and {@code outcome}</li>
+ *     <li>{@code weather.upstream.errors}: failed Open-Meteo calls by {@code kind} and {@code type}</li>
+ *     <li>{@code weather.upstream.parse}: time spent in the response parser by {@code kind}</li>
+ *     <li>{@code weather.http.rate.limited}: requests over their client's rate limit by {@code outcome}</li>
+ *     <li>{@code weather.upstream.in.flight} and {@code weather.http.in.flight}: requests currently in progress</li>
+ *     <li>{@code weather.prewarm.refreshes}: background refreshes started ahead of expiry by {@code source}</li>
+ *     <li>{@code weather.locations.search} and {@code weather.locations.results}: location lookup latency and
+ *     result counts by {@code operation}</li>
+ *     <li>{@code weather.locations.reloads}: location dataset reloads by {@code outcome}, and
+ *     {@code weather.locations.count}: locations in the dataset in service</li>
+ * </ul>
+ */
+@Component
+public class WeatherMetrics {
+    static final String SUCCESS = "success";
+
+    private final MeterRegistry registry;
+    private final AtomicInteger upstreamInFlight = new AtomicInteger();
+    private final AtomicInteger httpInFlight = new AtomicInteger();
+
+    public WeatherMetrics() {
+        this(new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public WeatherMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        registry.gauge("weather.upstream.in.flight", upstreamInFlight);
+        registry.gauge("weather.http.in.flight", httpInFlight);
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    /** Starts timing an upstream call; every sample must be passed to {@link #upstreamFinished}. */
+    public Timer.Sample upstreamStarted() {
+        upstreamInFlight.incrementAndGet();
+        return Timer.start(registry);
+    }
+
+    /** Records an upstream call, with {@code error} {@code null} on success. */
+    public void upstreamFinished(Timer.Sample sample, String kind, Throwable error) {
+        upstreamInFlight.decrementAndGet();
+        String outcome = error == null ? SUCCESS : errorType(error);
+        sample.stop(Timer.builder("weather.upstream.requests")
+                .description("Open-Meteo request latency, including streaming the body through the parser")
+                .tags("kind", kind, "outcome", outcome)
+                .register(registry));
+        if (error != null) {
+            registry.counter("weather.upstream.errors", "kind", kind, "type", outcome).increment();
+        }
+    }
+
+    /** Counts an upstream call that was not made because the outbound rate limit was exhausted. */
+    public void upstreamRateLimited(String kind) {
+        registry.counter("weather.upstream.errors", "kind", kind, "type", "rate_limited").increment();
+    }
+
+    public void parseTime(String kind, long nanos) {
+        Timer.builder("weather.upstream.parse")
+                .description("Time spent parsing Open-Meteo responses")
+                .tag("kind", kind)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Times a location lookup and records how many results it returned. */
+    public <T> List<T> timeLookup(String operation, Supplier<List<T>> lookup) {
+        long start = System.nanoTime();
+        List<T> results = lookup.get();
+        Timer.builder("weather.locations.search")
+                .tag("operation", operation)
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("weather.locations.results")
+                .tag("operation", operation)
+                .register(registry)
+                .record(results.size());
+        return results;
+    }
+
+    public void prewarmStarted(String source) {
+        registry.counter("weather.prewarm.refreshes", "source", source).increment();
+    }
+
+    public void locationsReloaded(String outcome) {
+        registry.counter("weather.locations.reloads", "outcome", outcome).increment();
+    }
+
+    /** Counts a forecast subscription event of the given type delivered to one subscriber. */
+    public void subscriptionEventSent(String type) {
+        registry.counter("weather.subscriptions.events", "type", type).increment();
+    }
+
+    /** Counts a subscriber disconnected because it fell too far behind on its events. */
+    public void subscriptionDropped() {
+        registry.counter("weather.subscriptions.dropped").increment();
+    }
+
+    /** Counts a request that was over its client's rate limit and was either {@code delayed} or {@code rejected}. */
+    public void inboundRateLimited(String outcome) {
+        registry.counter("weather.http.rate.limited", "outcome", outcome).increment();
+    }
+
+    void httpStarted() {
+        httpInFlight.incrementAndGet();
+    }
+
+    void httpFinished() {
+        httpInFlight.decrementAndGet();
+    }
+
+    /** Maps a failed upstream call to a low-cardinality error type. */
+    static String errorType(Throwable error) {
+        Throwable e = error;
+        while ((e instanceof CompletionException || e instanceof UncheckedIOException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e instanceof CallNotPermittedException) {
+            return "circuit_open";
+        }
+        if (e instanceof RestClientResponseException) {
+            return "http_" + ((RestClientResponseException) e).getRawStatusCode() / 100 + "xx";
+        }
+        if (e instanceof ResourceAccessException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e instanceof SocketTimeoutException || e instanceof HttpTimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof JsonProcessingException || e instanceof DateTimeException
+                || e instanceof NumberFormatException) {
+            return "parse_error";
+        }
+        if (e instanceof IOException) {
+            return "io_error";
+        }
+        return "error";
+    }
+}
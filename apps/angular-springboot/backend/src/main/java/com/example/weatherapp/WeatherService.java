@@ -1,110 +1,335 @@
 package com.example.weatherapp;
 
-import com.example.weatherapp.model.DailyForecast;
+import com.example.weatherapp.model.HourlyForecastResponse;
 import com.example.weatherapp.model.WeeklyForecastResponse;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class WeatherService {
-    private static final String OPEN_METEO_WEEKLY_URL = "https://api.open-meteo.com/v1/forecast";
-    private static final String OPEN_METEO_HOURLY_URL = "https://api.open-meteo.com/v1/forecast";
+    private static final String OPEN_METEO_FORECAST_URL = "https://api.open-meteo.com/v1/forecast";
+    public static final int HOURLY_ROWS = 24;
+    // Hourly forecasts are fetched and cached for Open-Meteo's full horizon; requests slice the hours they need
+    static final int HOURLY_FORECAST_DAYS = 16;
+    public static final int MAX_HOURLY_ROWS = HOURLY_FORECAST_DAYS * 24;
 
     private RestTemplate restTemplate = new RestTemplate();
 
+    private final OpenMeteoParser parser = new OpenMeteoParser();
+
+    @Autowired
+    private ForecastCache forecastCache = new ForecastCache();
+
+    @Autowired
+    private CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("openMeteo");
+
+    @Autowired
+    private HttpClient httpClient;
+
+    @Autowired
+    private WeatherMetrics metrics = new WeatherMetrics();
+
+    @Autowired
+    private TokenBucket upstreamRateLimit = new TokenBucket(10, 20);
+
+    // How long a call may wait for a rate-limit token before the forecast is reported unavailable
+    @Value("${weather.upstream.rate-limit.max-wait:500ms}")
+    private Duration rateLimitMaxWait = Duration.ofMillis(500);
+
+    // Overridden to point the service at a stand-in, such as the load test's fake Open-Meteo server
+    @Value("${weather.upstream.forecast-url:" + OPEN_METEO_FORECAST_URL + "}")
+    private String forecastUrl = OPEN_METEO_FORECAST_URL;
+
+    @Value("${weather.upstream.read-timeout:5s}")
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    // Maximum number of coordinates sent in one multi-location Open-Meteo request
+    @Value("${weather.upstream.batch-size:50}")
+    private int batchSize = 50;
+
     public WeatherService() {}
 
     public WeatherService(RestTemplate restTemplate) {
         this.restTemplate = restTemplate;
     }
 
+    @Autowired
     public void setRestTemplate(RestTemplate restTemplate) {
         this.restTemplate = restTemplate;
     }
 
+    public void setForecastCache(ForecastCache forecastCache) {
+        this.forecastCache = forecastCache;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public void setHttpClient(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    public void setMetrics(WeatherMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setUpstreamRateLimit(TokenBucket upstreamRateLimit) {
+        this.upstreamRateLimit = upstreamRateLimit;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     public WeeklyForecastResponse getWeeklyForecast(double latitude, double longitude, String units) {
-        // Map units to Open-Meteo expected values
-        String temperatureUnit;
-        if ("C".equalsIgnoreCase(units) || "metric".equalsIgnoreCase(units)) {
-            temperatureUnit = "celsius";
-        } else if ("F".equalsIgnoreCase(units) || "imperial".equalsIgnoreCase(units)) {
-            temperatureUnit = "fahrenheit";
-        } else {
-            temperatureUnit = "celsius"; // default
+        ForecastKey key = weeklyKey(latitude, longitude);
+        DailySeries series = forecastCache.get(key, loadWeekly(key));
+        return series == null ? null : series.toResponse(TemperatureUnit.of(units));
+    }
+
+    public HourlyForecastResponse getHourlyForecast(double latitude, double longitude) {
+        ForecastKey key = hourlyKey(latitude, longitude);
+        HourlySeries series = forecastCache.get(key, loadHourly(key));
+        return series == null ? null : series.toResponse(TemperatureUnit.CELSIUS, HOURLY_ROWS);
+    }
+
+    /** The cached daily series behind {@link #getWeeklyForecast}, with the entry's ETag and remaining freshness. */
+    public ForecastCache.Entry<DailySeries> getWeeklyForecastEntry(double latitude, double longitude) {
+        ForecastKey key = weeklyKey(latitude, longitude);
+        return forecastCache.getEntry(key, loadWeekly(key));
+    }
+
+    /** The cached hourly series behind {@link #getHourlyForecast}, with the entry's ETag and remaining freshness. */
+    public ForecastCache.Entry<HourlySeries> getHourlyForecastEntry(double latitude, double longitude) {
+        ForecastKey key = hourlyKey(latitude, longitude);
+        return forecastCache.getEntry(key, loadHourly(key));
+    }
+
+    /**
+     * Weekly forecasts for many coordinates at once. Coordinates are deduplicated by grid cell, cached and in-flight
+     * cells are reused, and the remaining cells are fetched with one multi-coordinate Open-Meteo request per
+     * {@code batchSize} cells. Returns one forecast per input coordinate, in order, {@code null} where unavailable.
+     */
+    public List<WeeklyForecastResponse> getWeeklyForecasts(double[] latitudes, double[] longitudes, String units) {
+        TemperatureUnit unit = TemperatureUnit.of(units);
+        List<ForecastKey> keys = new ArrayList<>(latitudes.length);
+        for (int i = 0; i < latitudes.length; i++) {
+            keys.add(weeklyKey(latitudes[i], longitudes[i]));
         }
-        String url = UriComponentsBuilder.fromHttpUrl(OPEN_METEO_WEEKLY_URL)
-                .queryParam("latitude", latitude)
-                .queryParam("longitude", longitude)
-                .queryParam("daily", "temperature_2m_max,temperature_2m_min,weathercode,precipitation_probability_max")
-                .queryParam("temperature_unit", temperatureUnit)
-                .queryParam("timezone", "auto")
-                .toUriString();
-        String response = restTemplate.getForObject(url, String.class);
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(response);
-            WeeklyForecastResponse result = new WeeklyForecastResponse();
-            result.setLatitude(root.path("latitude").asDouble());
-            result.setLongitude(root.path("longitude").asDouble());
-            result.setUnits(temperatureUnit);
-            List<DailyForecast> forecast = new ArrayList<>();
-            JsonNode daily = root.path("daily");
-            for (int i = 0; i < daily.path("time").size(); i++) {
-                DailyForecast df = new DailyForecast();
-                df.setDay(daily.path("time").get(i).asText());
-                df.setWeatherCode(daily.path("weathercode").get(i).asInt());
-                DailyForecast.Temperature temp = new DailyForecast.Temperature();
-                temp.setMax(daily.path("temperature_2m_max").get(i).asDouble());
-                temp.setMin(daily.path("temperature_2m_min").get(i).asDouble());
-                df.setTemperature(temp);
-                // Set precipitationChance if available, else 0
-                if (daily.has("precipitation_probability_max")) {
-                    df.setPrecipitationChance(daily.path("precipitation_probability_max").get(i).asDouble());
-                } else {
-                    df.setPrecipitationChance(0);
+        Map<ForecastKey, DailySeries> forecasts = forecastCache.getAll(keys, this::fetchWeeklyBatch);
+        return keys.stream()
+                .map(key -> forecasts.get(key) == null ? null : forecasts.get(key).toResponse(unit))
+                .collect(Collectors.toList());
+    }
+
+    private Map<ForecastKey, DailySeries> fetchWeeklyBatch(List<ForecastKey> keys) {
+        Map<ForecastKey, DailySeries> result = new HashMap<>();
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<ForecastKey> chunk = keys.subList(from, Math.min(keys.size(), from + batchSize));
+            List<DailySeries> forecasts = fetch("weekly_batch", weeklyUri(chunk), parser::parseWeeklyBatch);
+            // Open-Meteo answers in request order; a short or failed answer leaves the whole chunk unavailable
+            if (forecasts != null && forecasts.size() == chunk.size()) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    result.put(chunk.get(i), forecasts.get(i));
                 }
-                forecast.add(df);
             }
-            result.setForecast(forecast);
-            return result;
-        } catch (Exception e) {
-            return null;
         }
+        return result;
+    }
+
+    /**
+     * Non-blocking variant of {@link #getWeeklyForecast}: a cache miss is fetched with the pooled HTTP/2 client and
+     * no thread waits for the upstream response. Completes with {@code null} when the forecast is unavailable.
+     */
+    public CompletableFuture<WeeklyForecastResponse> getWeeklyForecastAsync(double latitude, double longitude, String units) {
+        ForecastKey key = weeklyKey(latitude, longitude);
+        return forecastCache.<DailySeries>getAsync(key, loadWeeklyAsync(key))
+                .thenApply(series -> series == null ? null : series.toResponse(TemperatureUnit.of(units)));
+    }
+
+    /** Non-blocking variant of {@link #getHourlyForecast}. */
+    public CompletableFuture<HourlyForecastResponse> getHourlyForecastAsync(double latitude, double longitude) {
+        ForecastKey key = hourlyKey(latitude, longitude);
+        return forecastCache.<HourlySeries>getAsync(key, loadHourlyAsync(key))
+                .thenApply(series -> series == null ? null : series.toResponse(TemperatureUnit.CELSIUS, HOURLY_ROWS));
     }
 
-    public Object getHourlyForecast(double latitude, double longitude) {
-        String url = UriComponentsBuilder.fromHttpUrl(OPEN_METEO_HOURLY_URL)
-                .queryParam("latitude", latitude)
-                .queryParam("longitude", longitude)
+    /** Non-blocking variant of {@link #getWeeklyForecastEntry}. */
+    public CompletableFuture<ForecastCache.Entry<DailySeries>> getWeeklyForecastEntryAsync(double latitude, double longitude) {
+        ForecastKey key = weeklyKey(latitude, longitude);
+        return forecastCache.getEntryAsync(key, loadWeeklyAsync(key));
+    }
+
+    /** Non-blocking variant of {@link #getHourlyForecastEntry}. */
+    public CompletableFuture<ForecastCache.Entry<HourlySeries>> getHourlyForecastEntryAsync(double latitude, double longitude) {
+        ForecastKey key = hourlyKey(latitude, longitude);
+        return forecastCache.getEntryAsync(key, loadHourlyAsync(key));
+    }
+
+    /** Forecasts are cached in canonical units, so one key serves every requested unit. */
+    public ForecastKey weeklyKey(double latitude, double longitude) {
+        return forecastCache.key(ForecastKey.Kind.WEEKLY, latitude, longitude);
+    }
+
+    public ForecastKey hourlyKey(double latitude, double longitude) {
+        return forecastCache.key(ForecastKey.Kind.HOURLY, latitude, longitude);
+    }
+
+    /**
+     * Reloads the forecast for the key in the background with the non-blocking client when it is missing or becomes
+     * stale within {@code lead}. Returns whether an upstream request was started.
+     */
+    public boolean refreshAhead(ForecastKey key, Duration lead) {
+        return forecastCache.refreshAhead(key, lead,
+                key.getKind() == ForecastKey.Kind.WEEKLY ? loadWeeklyAsync(key) : loadHourlyAsync(key));
+    }
+
+    private Supplier<DailySeries> loadWeekly(ForecastKey key) {
+        return () -> fetch("weekly", weeklyUri(key), parser::parseWeekly);
+    }
+
+    private Supplier<HourlySeries> loadHourly(ForecastKey key) {
+        return () -> fetch("hourly", hourlyUri(key), parser::parseHourly);
+    }
+
+    private Supplier<CompletableFuture<DailySeries>> loadWeeklyAsync(ForecastKey key) {
+        return () -> fetchAsync("weekly", weeklyUri(key), parser::parseWeekly);
+    }
+
+    private Supplier<CompletableFuture<HourlySeries>> loadHourlyAsync(ForecastKey key) {
+        return () -> fetchAsync("hourly", hourlyUri(key), parser::parseHourly);
+    }
+
+    private URI weeklyUri(ForecastKey key) {
+        return weeklyUri(List.of(key));
+    }
+
+    private URI weeklyUri(List<ForecastKey> keys) {
+        return UriComponentsBuilder.fromHttpUrl(forecastUrl)
+                .queryParam("latitude", keys.stream().map(key -> String.valueOf(key.getLatitude())).collect(Collectors.joining(",")))
+                .queryParam("longitude", keys.stream().map(key -> String.valueOf(key.getLongitude())).collect(Collectors.joining(",")))
+                .queryParam("daily", "temperature_2m_max,temperature_2m_min,weathercode,precipitation_probability_max")
+                .queryParam("timezone", "auto")
+                .build()
+                .toUri();
+    }
+
+    private URI hourlyUri(ForecastKey key) {
+        return UriComponentsBuilder.fromHttpUrl(forecastUrl)
+                .queryParam("latitude", key.getLatitude())
+                .queryParam("longitude", key.getLongitude())
                 .queryParam("hourly", "temperature_2m,precipitation,weathercode")
-                .queryParam("forecast_days", 1)
+                .queryParam("forecast_days", HOURLY_FORECAST_DAYS)
                 .queryParam("timezone", "auto")
-                .toUriString();
-        String response = restTemplate.getForObject(url, String.class);
+                .build()
+                .toUri();
+    }
+
+    /**
+     * Calls Open-Meteo through the circuit breaker and parses the body as it streams in. Returns {@code null} when the
+     * call or the parse fails or the breaker is open, so callers fall back to a stale cached forecast or an error
+     * response without waiting on a sick upstream.
+     */
+    private <T> T fetch(String kind, URI uri, BodyParser<T> bodyParser) {
+        long wait = upstreamRateLimit.tryReserve(rateLimitMaxWait.toNanos());
+        if (wait < 0) {
+            metrics.upstreamRateLimited(kind);
+            return null;
+        }
+        LockSupport.parkNanos(wait);
+        Timer.Sample sample = metrics.upstreamStarted();
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(response);
-            JsonNode hourly = root.path("hourly");
-            // Build array of 24 hourly objects as expected by Karate tests
-            List<Object> hourlyList = new ArrayList<>();
-            for (int i = 0; i < 24 && i < hourly.path("time").size(); i++) {
-                var hourObj = new java.util.HashMap<String, Object>();
-                hourObj.put("hour", i);
-                hourObj.put("temperature", hourly.path("temperature_2m").get(i).asDouble());
-                hourObj.put("precipitationChance", hourly.path("precipitation").get(i).asDouble());
-                hourlyList.add(hourObj);
-            }
-            java.util.Map<String, Object> result = new java.util.HashMap<>();
-            result.put("hourly", hourlyList);
+            T result = circuitBreaker.executeSupplier(() -> restTemplate.execute(uri, HttpMethod.GET,
+                    request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON)),
+                    response -> parse(kind, bodyParser, response.getBody())));
+            metrics.upstreamFinished(sample, kind, null);
             return result;
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
+            // Besides client errors and an open breaker, a malformed value (a date, a number) fails in the parser;
+            // the breaker has already recorded it, and the caller treats it like any other unavailable upstream
+            metrics.upstreamFinished(sample, kind, e);
             return null;
         }
     }
+
+    /** Asynchronous counterpart of {@link #fetch}; completes with {@code null} on any upstream failure. */
+    private <T> CompletableFuture<T> fetchAsync(String kind, URI uri, BodyParser<T> bodyParser) {
+        long wait = upstreamRateLimit.tryReserve(rateLimitMaxWait.toNanos());
+        if (wait < 0) {
+            metrics.upstreamRateLimited(kind);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (wait == 0) {
+            return sendAsync(kind, uri, bodyParser);
+        }
+        // Wait for the reserved token on a timer rather than on a thread
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS))
+                .thenCompose(ignored -> sendAsync(kind, uri, bodyParser));
+    }
+
+    private <T> CompletableFuture<T> sendAsync(String kind, URI uri, BodyParser<T> bodyParser) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        Timer.Sample sample = metrics.upstreamStarted();
+        return circuitBreaker.executeCompletionStage(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                        .thenApply(response -> {
+                            if (response.statusCode() != 200) {
+                                throw new RestClientResponseException("Open-Meteo responded with HTTP " + response.statusCode(),
+                                        response.statusCode(), "", null, null, null);
+                            }
+                            try {
+                                return parse(kind, bodyParser, new ByteArrayInputStream(response.body()));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }))
+                .toCompletableFuture()
+                .whenComplete((result, error) -> metrics.upstreamFinished(sample, kind, error))
+                .exceptionally(e -> null);
+    }
+
+    private <T> T parse(String kind, BodyParser<T> bodyParser, InputStream body) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return bodyParser.parse(body);
+        } finally {
+            metrics.parseTime(kind, System.nanoTime() - start);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
 }
@@ -0,0 +1,35 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Applies per-client rate limits to the endpoints that can reach Open-Meteo or scan the location index, and registers
+ * the streaming writer for hourly forecast rows.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    @Autowired
+    private ClientRateLimitInterceptor clientRateLimitInterceptor;
+
+    @Autowired
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(clientRateLimitInterceptor)
+                .addPathPatterns("/api/v1/forecast/**", "/api/v1/locations/search");
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Ahead of Jackson, which would otherwise claim application/json for any type
+        converters.add(0, new HourlyRowsHttpMessageConverter(objectMapper));
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.weatherapp.model;
+
+import java.util.List;
+
+public class BatchForecastRequest {
+    private String units;
+    private List<Item> locations;
+
+    public BatchForecastRequest() {}
+
+    public String getUnits() { return units; }
+    public void setUnits(String units) { this.units = units; }
+
+    public List<Item> getLocations() { return locations; }
+    public void setLocations(List<Item> locations) { this.locations = locations; }
+
+    /** One requested location: either a location id or a latitude/longitude pair. */
+    public static class Item {
+        private String id;
+        private Double latitude;
+        private Double longitude;
+
+        public Item() {}
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        public Double getLatitude() { return latitude; }
+        public void setLatitude(Double latitude) { this.latitude = latitude; }
+
+        public Double getLongitude() { return longitude; }
+        public void setLongitude(Double longitude) { this.longitude = longitude; }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.weatherapp.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+public class BatchForecastResponse {
+    private List<Result> forecasts;
+
+    public BatchForecastResponse() {}
+
+    public BatchForecastResponse(List<Result> forecasts) {
+        this.forecasts = forecasts;
+    }
+
+    public List<Result> getForecasts() { return forecasts; }
+    public void setForecasts(List<Result> forecasts) { this.forecasts = forecasts; }
+
+    /** Outcome for one requested location, in request order; exactly one of forecast and error is set. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Result {
+        private String id;
+        private Double latitude;
+        private Double longitude;
+        private WeeklyForecastResponse forecast;
+        private String error;
+
+        public Result() {}
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        public Double getLatitude() { return latitude; }
+        public void setLatitude(Double latitude) { this.latitude = latitude; }
+
+        public Double getLongitude() { return longitude; }
+        public void setLongitude(Double longitude) { this.longitude = longitude; }
+
+        public WeeklyForecastResponse getForecast() { return forecast; }
+        public void setForecast(WeeklyForecastResponse forecast) { this.forecast = forecast; }
+
+        public String getError() { return error; }
+        public void setError(String error) { this.error = error; }
+    }
+}
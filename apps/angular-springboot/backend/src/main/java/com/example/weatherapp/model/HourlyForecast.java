@@ -0,0 +1,18 @@
+package com.example.weatherapp.model;
+
+public class HourlyForecast {
+    private int hour;
+    private double temperature;
+    private double precipitationChance;
+
+    public HourlyForecast() {}
+
+    public int getHour() { return hour; }
+    public void setHour(int hour) { this.hour = hour; }
+
+    public double getTemperature() { return temperature; }
+    public void setTemperature(double temperature) { this.temperature = temperature; }
+
+    public double getPrecipitationChance() { return precipitationChance; }
+    public void setPrecipitationChance(double precipitationChance) { this.precipitationChance = precipitationChance; }
+}
@@ -0,0 +1,16 @@
+package com.example.weatherapp.model;
+
+import java.util.List;
+
+public class HourlyForecastResponse {
+    private List<HourlyForecast> hourly;
+
+    public HourlyForecastResponse() {}
+
+    public HourlyForecastResponse(List<HourlyForecast> hourly) {
+        this.hourly = hourly;
+    }
+
+    public List<HourlyForecast> getHourly() { return hourly; }
+    public void setHourly(List<HourlyForecast> hourly) { this.hourly = hourly; }
+}
@@ -0,0 +1,60 @@
+package com.example.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientRateLimitInterceptorTest {
+    private final ClientRateLimitInterceptor interceptor =
+            new ClientRateLimitInterceptor(0.5, 2, Duration.ZERO, 10, 1000, "X-API-Key", new String[] {"key-1"});
+
+    @Test
+    void rejectsClientsOverTheirLimitWithRetryAfter() throws Exception {
+        assertEquals(200, admit("10.0.0.1", null).getStatus());
+        assertEquals(200, admit("10.0.0.1", null).getStatus());
+        MockHttpServletResponse rejected = admit("10.0.0.1", null);
+        assertEquals(429, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+        assertTrue(rejected.getContentAsString().contains("Too many requests"));
+
+        // Other addresses and API keys have their own buckets
+        assertEquals(200, admit("10.0.0.2", null).getStatus());
+        assertEquals(200, admit("10.0.0.1", "key-1").getStatus());
+    }
+
+    @Test
+    void unknownApiKeysShareTheirAddressBucket() throws Exception {
+        assertEquals(200, admit("10.0.0.3", "made-up-1").getStatus());
+        assertEquals(200, admit("10.0.0.3", "made-up-2").getStatus());
+        assertEquals(429, admit("10.0.0.3", "made-up-3").getStatus());
+        assertEquals(429, admit("10.0.0.3", null).getStatus());
+        assertEquals(200, admit("10.0.0.3", "key-1").getStatus());
+    }
+
+    @Test
+    void waitsForTheNextTokenWhenItIsCloseEnough() throws Exception {
+        ClientRateLimitInterceptor patient = new ClientRateLimitInterceptor(20, 1, Duration.ofSeconds(1), 10, 1000,
+                "X-API-Key", new String[0]);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        assertTrue(patient.preHandle(request, new MockHttpServletResponse(), null));
+        long start = System.nanoTime();
+        assertTrue(patient.preHandle(request, new MockHttpServletResponse(), null));
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(40).toNanos());
+    }
+
+    private MockHttpServletResponse admit(String address, String apiKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(address);
+        if (apiKey != null) {
+            request.addHeader("X-API-Key", apiKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean admitted = interceptor.preHandle(request, response, null);
+        assertEquals(admitted, response.getStatus() == 200);
+        return response;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastCacheTest {
+    private final AtomicLong now = new AtomicLong();
+    private final ForecastCache cache = new ForecastCache(0.01, Duration.ofMinutes(5), Duration.ofMinutes(10),
+            100, 1024 * 1024, now::get, Runnable::run);
+
+    @Test
+    void keySnapsNearbyCoordinatesToSameCell() {
+        ForecastKey a = cache.key(ForecastKey.Kind.WEEKLY, 52.5201, 13.4012);
+        ForecastKey b = cache.key(ForecastKey.Kind.WEEKLY, 52.5199, 13.3988);
+        assertEquals(a, b);
+        assertEquals(52.52, a.getLatitude());
+        assertEquals(13.4, a.getLongitude());
+        assertNotEquals(a, cache.key(ForecastKey.Kind.HOURLY, 52.52, 13.405));
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        ForecastKey key = cache.key(ForecastKey.Kind.HOURLY, 40.71, -74.0);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.get(key, () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return "forecast";
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("forecast", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().loadCount());
+        assertEquals(7, cache.stats().hitCount());
+    }
+
+    @Test
+    void nullResultIsNotCached() {
+        ForecastKey key = cache.key(ForecastKey.Kind.WEEKLY, 1, 1);
+        assertNull(cache.get(key, () -> null));
+        assertEquals("retry", cache.get(key, () -> "retry"));
+    }
+
+    @Test
+    void staleEntryIsServedWhileRefreshReplacesIt() {
+        ForecastKey key = cache.key(ForecastKey.Kind.WEEKLY, 1, 1);
+        assertEquals("v1", cache.get(key, () -> "v1"));
+
+        now.addAndGet(Duration.ofMinutes(6).toNanos());
+        assertEquals("v1", cache.get(key, () -> "v2"));
+        assertEquals("v2", cache.get(key, () -> "v3"));
+    }
+
+    @Test
+    void staleEntrySurvivesFailedRefreshUntilGraceWindowEnds() {
+        ForecastKey key = cache.key(ForecastKey.Kind.WEEKLY, 1, 1);
+        cache.get(key, () -> "v1");
+
+        now.addAndGet(Duration.ofMinutes(6).toNanos());
+        assertEquals("v1", cache.get(key, () -> null));
+        assertEquals("v1", cache.get(key, () -> { throw new IllegalStateException("upstream down"); }));
+
+        now.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertNull(cache.get(key, () -> null));
+    }
+
+    @Test
+    void entryVersionChangesOnlyWhenForecastIsReloaded() {
+        ForecastKey key = cache.key(ForecastKey.Kind.WEEKLY, 2, 2);
+        ForecastCache.Entry<String> first = cache.getEntry(key, () -> "v1");
+        assertEquals(300, first.getMaxAgeSeconds());
+
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        ForecastCache.Entry<String> hit = cache.getEntry(key, () -> "unused");
+        assertEquals(first.getETag(), hit.getETag());
+        assertEquals(180, hit.getMaxAgeSeconds());
+
+        now.addAndGet(Duration.ofMinutes(4).toNanos());
+        ForecastCache.Entry<String> stale = cache.getEntry(key, () -> "v2");
+        assertEquals("v1", stale.getValue());
+        assertEquals(0, stale.getMaxAgeSeconds());
+
+        ForecastCache.Entry<String> refreshed = cache.getEntry(key, () -> "unused");
+        assertEquals("v2", refreshed.getValue());
+        assertNotEquals(first.getETag(), refreshed.getETag());
+    }
+
+    @Test
+    void refreshAheadReloadsOnlyEntriesExpiringWithinLead() {
+        ForecastKey key = cache.key(ForecastKey.Kind.WEEKLY, 3, 3);
+        assertTrue(cache.refreshAhead(key, Duration.ofMinutes(1), () -> CompletableFuture.completedFuture("v1")));
+        assertEquals("v1", cache.get(key, () -> "unused"));
+
+        assertFalse(cache.refreshAhead(key, Duration.ofMinutes(1), () -> CompletableFuture.completedFuture("v2")));
+        now.addAndGet(Duration.ofMinutes(4).toNanos());
+        assertTrue(cache.refreshAhead(key, Duration.ofMinutes(1), () -> CompletableFuture.completedFuture("v2")));
+        assertEquals("v2", cache.get(key, () -> "unused"));
+        assertEquals(300, cache.getEntry(key, () -> "unused").getMaxAgeSeconds());
+    }
+
+    @Test
+    void restartedCacheServesForecastsFromDiskStore(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(ForecastStore.FILE_NAME);
+        // Written by the store's own thread; close() drains it
+        ForecastStore store = new ForecastStore(file, 1 << 20, 1024, System::currentTimeMillis, null);
+        cache.setStore(store);
+        cache.restore();
+        ForecastKey key = cache.key(ForecastKey.Kind.HOURLY, 4, 4);
+        HourlySeries series = new HourlySeries(null, 3600, new float[] {12}, new float[] {0}, new byte[] {1});
+        String etag = cache.getEntry(key, () -> series).getETag();
+        store.close();
+
+        ForecastCache restarted = new ForecastCache(0.01, Duration.ofMinutes(5), Duration.ofMinutes(10),
+                100, 1024 * 1024, now::get, Runnable::run);
+        restarted.setStore(new ForecastStore(file, 1 << 20, 1024, System::currentTimeMillis, Runnable::run));
+        restarted.restore();
+        ForecastCache.Entry<HourlySeries> entry = restarted.getEntry(key, () -> fail("should be restored from disk"));
+        assertEquals(etag, entry.getETag());
+        assertEquals(1, entry.getValue().size());
+        assertTrue(entry.getMaxAgeSeconds() > 290);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
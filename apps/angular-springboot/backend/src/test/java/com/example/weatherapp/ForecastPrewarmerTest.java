@@ -0,0 +1,116 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.Location;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ForecastPrewarmerTest {
+    private final WeatherService weatherService = mock(WeatherService.class);
+    private final LocationService locationService = mock(LocationService.class);
+    private final ForecastPrewarmer prewarmer = new ForecastPrewarmer();
+
+    @BeforeEach
+    void setUp() {
+        when(weatherService.weeklyKey(anyDouble(), anyDouble())).thenAnswer(invocation ->
+                key(invocation.getArgument(0), invocation.getArgument(1)));
+        when(weatherService.refreshAhead(any(), any())).thenReturn(true);
+        when(locationService.dataset()).thenReturn(LocationIndex.build(List.of(city("A", 0), city("B", 10), city("C", 20))));
+        prewarmer.setWeatherService(weatherService);
+        prewarmer.setLocationService(locationService);
+        prewarmer.setMaxRequestsPerSecond(1_000_000);
+        prewarmer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        prewarmer.stop();
+    }
+
+    @Test
+    void hotKeysAreRankedByRequestCount() {
+        prewarmer.setHotLocations(2);
+        for (int i = 0; i < 5; i++) {
+            prewarmer.record(key(1, 1));
+        }
+        prewarmer.record(key(2, 2));
+        for (int i = 0; i < 3; i++) {
+            prewarmer.record(key(3, 3));
+        }
+        assertEquals(List.of(key(1, 1), key(3, 3)), prewarmer.hotKeys());
+    }
+
+    @Test
+    void neighbouringCellsWithEqualHashCodesAreCountedApart() {
+        ForecastKey hot = key(52.52, 13.4);
+        ForecastKey cold = key(52.53, 13.09);
+        assertEquals(hot.hashCode(), cold.hashCode());
+        CountMinSketch sketch = new CountMinSketch(16_384);
+        for (int i = 0; i < 100; i++) {
+            sketch.add(hot);
+        }
+        assertEquals(100, sketch.estimate(hot));
+        assertEquals(0, sketch.estimate(cold));
+    }
+
+    @Test
+    void refreshesHotKeysFirstThenWalksTheCatalogueWithinBudget() {
+        prewarmer.record(key(50, 50));
+
+        assertEquals(3, prewarmer.prewarm(3).join());
+        ArgumentCaptor<ForecastKey> keys = ArgumentCaptor.forClass(ForecastKey.class);
+        verify(weatherService, times(3)).refreshAhead(keys.capture(), any(Duration.class));
+        assertEquals(List.of(key(50, 50), key(0, 0), key(10, 0)), keys.getAllValues());
+
+        // The next run resumes the catalogue where the budget ran out
+        clearInvocations(weatherService);
+        assertEquals(2, prewarmer.prewarm(2).join());
+        verify(weatherService, times(2)).refreshAhead(keys.capture(), any(Duration.class));
+        assertEquals(key(20, 0), keys.getAllValues().get(4));
+    }
+
+    @Test
+    void keysThatAreStillFreshDoNotUseTheBudget() {
+        when(weatherService.refreshAhead(eq(key(0, 0)), any())).thenReturn(false);
+        assertEquals(2, prewarmer.prewarm(10).join());
+    }
+
+    @Test
+    void refreshesAreSpacedOnThePrewarmThread() {
+        prewarmer.setMaxRequestsPerSecond(50);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        when(weatherService.refreshAhead(any(), any())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return true;
+        });
+
+        long start = System.nanoTime();
+        assertEquals(3, prewarmer.prewarm(3).join());
+        assertEquals(List.of("forecast-prewarm", "forecast-prewarm", "forecast-prewarm"), threads);
+        // Two gaps of at least three quarters of the 20 ms spacing
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    private static ForecastKey key(double latitude, double longitude) {
+        return new ForecastKey(ForecastKey.Kind.WEEKLY, latitude, longitude, 0.01);
+    }
+
+    private static Location city(String name, double latitude) {
+        Location location = new Location();
+        location.setId(name);
+        location.setName(name);
+        location.setType("city");
+        location.setLatitude(latitude);
+        return location;
+    }
+}
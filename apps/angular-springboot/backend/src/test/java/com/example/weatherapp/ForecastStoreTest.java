@@ -0,0 +1,157 @@
+package com.example.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastStoreTest {
+    private static final Duration RETENTION = Duration.ofHours(4);
+
+    private final AtomicLong now = new AtomicLong(Duration.ofDays(20_000).toMillis());
+
+    @Test
+    void reopenedStoreReturnsLiveForecastsWithLoadTimeAndVersion(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(ForecastStore.FILE_NAME);
+        ForecastStore store = open(file, 1 << 20, new ArrayList<>());
+        store.append(key(ForecastKey.Kind.WEEKLY, 10), daily(21.5f), now.get() - 1_000, 7);
+        store.append(key(ForecastKey.Kind.HOURLY, 10), hourly(12.5f), now.get() - 2_000, 8);
+        store.append(key(ForecastKey.Kind.WEEKLY, 20), daily(3f), now.get() - RETENTION.toMillis() - 1, 9);
+        store.close();
+
+        List<ForecastStore.Stored> restored = new ArrayList<>();
+        open(file, 1 << 20, restored);
+        assertEquals(2, restored.size());
+        ForecastStore.Stored weekly = restored.get(0);
+        assertEquals(ForecastKey.Kind.WEEKLY, weekly.kind);
+        assertEquals(52.52, weekly.latitude);
+        assertEquals(now.get() - 1_000, weekly.loadedAtMillis);
+        assertEquals(7, weekly.version);
+        DailySeries series = (DailySeries) weekly.value;
+        assertEquals(LocalDate.of(2025, 6, 27), series.day(0));
+        assertEquals(21.5, series.toResponse(TemperatureUnit.CELSIUS).getForecast().get(0).getTemperature().getMax());
+        HourlySeries hours = (HourlySeries) restored.get(1).value;
+        assertEquals(LocalDateTime.of(2025, 6, 27, 1, 0), hours.time(1));
+        assertEquals(12.5, hours.toResponse(TemperatureUnit.CELSIUS, 24).getHourly().get(0).getTemperature());
+        assertEquals(61, hours.weatherCode(1));
+    }
+
+    @Test
+    void tornTailIsCutOffAndLaterRecordsStayReadable(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(ForecastStore.FILE_NAME);
+        ForecastStore store = open(file, 1 << 20, new ArrayList<>());
+        store.append(key(ForecastKey.Kind.WEEKLY, 10), daily(1f), now.get(), 1);
+        store.append(key(ForecastKey.Kind.WEEKLY, 20), daily(2f), now.get(), 2);
+        store.close();
+        // A crash in the middle of the second write
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        List<ForecastStore.Stored> restored = new ArrayList<>();
+        store = open(file, 1 << 20, restored);
+        assertEquals(1, restored.size());
+        store.append(key(ForecastKey.Kind.WEEKLY, 30), daily(3f), now.get(), 3);
+        store.close();
+
+        restored.clear();
+        open(file, 1 << 20, restored);
+        assertEquals(List.of(1L, 3L), versions(restored));
+    }
+
+    @Test
+    void compactionKeepsTheLatestLiveRecordPerKey(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(ForecastStore.FILE_NAME);
+        ForecastStore store = open(file, 4096, new ArrayList<>());
+        store.append(key(ForecastKey.Kind.WEEKLY, 20), daily(0f), now.get(), 0);
+        now.addAndGet(RETENTION.toMillis() + 1);
+        for (int i = 1; i <= 200; i++) {
+            store.append(key(ForecastKey.Kind.WEEKLY, 10), daily(i), now.get(), i);
+        }
+        assertTrue(store.sizeBytes() <= 4096, "log was not compacted: " + store.sizeBytes());
+        store.close();
+
+        List<ForecastStore.Stored> restored = new ArrayList<>();
+        open(file, 4096, restored);
+        // Superseded and expired records are gone; those appended since the last compaction are replayed in order
+        List<Long> versions = versions(restored);
+        assertFalse(versions.contains(0L));
+        assertTrue(versions.size() < 50, versions.toString());
+        assertEquals(200L, versions.get(versions.size() - 1));
+        assertFalse(Files.exists(file.resolveSibling(ForecastStore.FILE_NAME + ".tmp")));
+    }
+
+    @Test
+    void queuedWritesCoalescePerKeyAndDropNewKeysWhenFull(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(ForecastStore.FILE_NAME);
+        List<Runnable> stalledWriter = new ArrayList<>();
+        ForecastStore store = new ForecastStore(file, 1 << 20, 2, now::get, stalledWriter::add);
+        store.open(RETENTION, stored -> {});
+        store.append(key(ForecastKey.Kind.WEEKLY, 10), daily(1f), now.get(), 1);
+        store.append(key(ForecastKey.Kind.WEEKLY, 20), daily(2f), now.get(), 2);
+        store.append(key(ForecastKey.Kind.WEEKLY, 10), daily(3f), now.get(), 3);
+        store.append(key(ForecastKey.Kind.WEEKLY, 30), daily(4f), now.get(), 4);
+        assertEquals(1, stalledWriter.size());
+        assertEquals(1, store.dropped());
+        // Nothing but the header is on disk until the writer runs
+        assertEquals(8, store.sizeBytes());
+
+        stalledWriter.forEach(Runnable::run);
+        store.close();
+        List<ForecastStore.Stored> restored = new ArrayList<>();
+        open(file, 1 << 20, restored);
+        assertEquals(List.of(3L, 2L), versions(restored));
+    }
+
+    @Test
+    void unknownFileFormatIsDiscarded(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(ForecastStore.FILE_NAME);
+        Files.write(file, "not a forecast log".getBytes());
+        List<ForecastStore.Stored> restored = new ArrayList<>();
+        ForecastStore store = open(file, 1 << 20, restored);
+        assertTrue(restored.isEmpty());
+        store.append(key(ForecastKey.Kind.WEEKLY, 10), daily(1f), now.get(), 1);
+        store.close();
+
+        open(file, 1 << 20, restored);
+        assertEquals(1, restored.size());
+    }
+
+    private ForecastStore open(Path file, long maxBytes, List<ForecastStore.Stored> sink) throws IOException {
+        ForecastStore store = new ForecastStore(file, maxBytes, 2, now::get, Runnable::run);
+        store.open(RETENTION, sink::add);
+        return store;
+    }
+
+    private static List<Long> versions(List<ForecastStore.Stored> stored) {
+        List<Long> versions = new ArrayList<>();
+        stored.forEach(s -> versions.add(s.version));
+        return versions;
+    }
+
+    private static ForecastKey key(ForecastKey.Kind kind, double longitude) {
+        return new ForecastKey(kind, 52.52, longitude, 0.01);
+    }
+
+    private static DailySeries daily(float max) {
+        return new DailySeries(52.52, 13.4, LocalDate.of(2025, 6, 27), new float[] {max, max + 1},
+                new float[] {max - 10, max - 9}, new float[] {40, 50}, new byte[] {3, 61});
+    }
+
+    private static HourlySeries hourly(float temperature) {
+        return new HourlySeries(LocalDateTime.of(2025, 6, 27, 0, 0), 3600, new float[] {temperature, temperature + 1},
+                new float[] {0, 0.4f}, new byte[] {0, 61});
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ForecastSubscriptionsTest {
+    private final ForecastCache cache = new ForecastCache(0.01, Duration.ofMinutes(5), Duration.ofMinutes(10),
+            100, 1024 * 1024, System::nanoTime, Runnable::run);
+    private final WeatherService weatherService = mock(WeatherService.class);
+    private final ForecastSubscriptions subscriptions = new ForecastSubscriptions();
+    private final ForecastKey key = cache.key(ForecastKey.Kind.WEEKLY, 52.52, 13.4);
+    private final AtomicInteger loads = new AtomicInteger();
+    private float[] maxTemperatures = {20, 21, 22};
+
+    @BeforeEach
+    void setUp() {
+        when(weatherService.getWeeklyForecastEntryAsync(anyDouble(), anyDouble())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(cache.getEntry(key, () -> {
+                    loads.incrementAndGet();
+                    return new DailySeries(52.52, 13.4, LocalDate.of(2024, 1, 1), maxTemperatures.clone(),
+                            new float[] {10, 11, 12}, new float[] {0, 0, 0}, new byte[] {1, 1, 1});
+                })));
+        subscriptions.setWeatherService(weatherService);
+    }
+
+    @Test
+    void subscribersOfOneLocationShareLoadsAndReceiveOnlyChangedDays() {
+        RecordingEmitter first = subscribe(null);
+        RecordingEmitter second = subscribe(null);
+        assertEquals(1, subscriptions.topicCount());
+        assertEquals(1, loads.get());
+        assertTrue(first.events.get(0).startsWith("event:forecast\n"));
+        assertEquals(first.events, second.events);
+
+        subscriptions.poll();
+        assertEquals(":\n\n", first.events.get(1));
+
+        cache.invalidateAll();
+        subscriptions.poll();
+        assertEquals(2, loads.get());
+        assertEquals(":\n\n", first.events.get(2));
+
+        cache.invalidateAll();
+        maxTemperatures = new float[] {20, 25, 22};
+        subscriptions.poll();
+        String update = first.events.get(3);
+        assertTrue(update.startsWith("event:update\n"));
+        assertTrue(update.contains("\"day\":\"2024-01-02\""));
+        assertFalse(update.contains("2024-01-01"));
+        assertEquals(first.events, second.events);
+    }
+
+    @Test
+    void reconnectWithCurrentEventIdSkipsTheSnapshot() {
+        RecordingEmitter first = subscribe(null);
+        String id = first.events.get(0).split("\n")[1].substring("id:".length());
+
+        RecordingEmitter reconnected = subscribe(id);
+        assertTrue(reconnected.events.isEmpty());
+        assertFalse(subscribe("stale").events.isEmpty());
+    }
+
+    @Test
+    void limitRejectsSubscribersAndClosedStreamsLeaveTheirTopic() {
+        subscriptions.setMaxSubscribers(1);
+        RecordingEmitter subscriber = subscribe(null);
+        assertFalse(subscriptions.subscribe(key, TemperatureUnit.CELSIUS, null, new RecordingEmitter()));
+
+        subscriber.closed = true;
+        subscriptions.poll();
+        assertEquals(0, subscriptions.subscriberCount());
+        assertEquals(0, subscriptions.topicCount());
+    }
+
+    @Test
+    void slowSubscriberIsDroppedWithoutHoldingBackPublishing() {
+        List<Runnable> stalledSenders = new ArrayList<>();
+        subscriptions.setSenders(stalledSenders::add);
+        subscriptions.setMaxQueuedEvents(2);
+        RecordingEmitter slow = subscribe(null);
+        subscriptions.poll();
+        assertEquals(1, subscriptions.subscriberCount());
+
+        subscriptions.poll();
+        assertEquals(0, subscriptions.subscriberCount());
+        assertEquals(0, subscriptions.topicCount());
+        // The backlog of a dropped subscriber is discarded when the senders catch up
+        stalledSenders.forEach(Runnable::run);
+        assertTrue(slow.events.isEmpty());
+    }
+
+    @Test
+    void changedItemsKeepsTheDocumentShapeUnlessTheDaysChange() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        String before = "{\"units\":\"celsius\",\"forecast\":[{\"day\":\"d1\",\"max\":1},{\"day\":\"d2\",\"max\":2}]}";
+        String after = "{\"units\":\"celsius\",\"forecast\":[{\"day\":\"d1\",\"max\":1},{\"day\":\"d2\",\"max\":3}]}";
+        String shifted = "{\"units\":\"celsius\",\"forecast\":[{\"day\":\"d2\",\"max\":3},{\"day\":\"d3\",\"max\":4}]}";
+
+        assertEquals(mapper.readTree("{\"forecast\":[{\"day\":\"d2\",\"max\":3}]}"),
+                ForecastSubscriptions.changedItems(mapper.readTree(before), mapper.readTree(after), "forecast", "day"));
+        assertNull(ForecastSubscriptions.changedItems(mapper.readTree(after), mapper.readTree(shifted),
+                "forecast", "day"));
+    }
+
+    private RecordingEmitter subscribe(String lastEventId) {
+        RecordingEmitter emitter = new RecordingEmitter();
+        assertTrue(subscriptions.subscribe(key, TemperatureUnit.CELSIUS, lastEventId, emitter));
+        return emitter;
+    }
+
+    /** Keeps the text of every event instead of writing it to a response. */
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> events = new ArrayList<>();
+        private boolean closed;
+
+        @Override
+        public void send(SseEventBuilder event) throws IOException {
+            if (closed) {
+                throw new IOException("Broken pipe");
+            }
+            events.add(event.build().stream()
+                    .map(data -> String.valueOf(data.getData()))
+                    .collect(Collectors.joining()));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HourlyRowsTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HourlySeries series = new HourlySeries(LocalDateTime.of(2025, 6, 27, 22, 0), 3600,
+            new float[] {12.5f, 11, 10.2f}, new float[] {0, 0.4f, 1.1f}, new byte[] {1, 61, 63});
+
+    @Test
+    void defaultFieldsWriteTheSameJsonAsTheBufferedResponse() throws IOException {
+        HourlyRows rows = new HourlyRows(series, TemperatureUnit.CELSIUS, 24, HourlyRows.Field.parse(null));
+        assertEquals(3, rows.size());
+        assertEquals(mapper.writeValueAsString(series.toResponse(TemperatureUnit.CELSIUS, 24)), write(rows, false));
+    }
+
+    @Test
+    void selectedFieldsAreWrittenOneRowPerLine() throws IOException {
+        HourlyRows rows = new HourlyRows(series, TemperatureUnit.FAHRENHEIT, 2,
+                HourlyRows.Field.parse("time, temperature,weatherCode"));
+        assertEquals("{\"time\":\"2025-06-27T22:00\",\"temperature\":54.5,\"weatherCode\":1}\n"
+                + "{\"time\":\"2025-06-27T23:00\",\"temperature\":51.8,\"weatherCode\":61}\n", write(rows, true));
+    }
+
+    @Test
+    void unknownFieldsAreRejected() {
+        assertEquals(EnumSet.of(HourlyRows.Field.HOUR), HourlyRows.Field.parse("HOUR"));
+        assertThrows(IllegalArgumentException.class, () -> HourlyRows.Field.parse("hour,humidity"));
+    }
+
+    private String write(HourlyRows rows, boolean ndjson) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            if (ndjson) {
+                rows.writeNdjson(generator);
+            } else {
+                rows.writeJson(generator);
+            }
+        }
+        return out.toString();
+    }
+}
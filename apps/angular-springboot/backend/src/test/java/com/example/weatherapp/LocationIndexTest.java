@@ -0,0 +1,184 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.Location;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocationIndexTest {
+    private final LocationIndex index = LocationIndex.build(List.of(
+            location("1", "Los Angeles", "City", null),
+            location("2", "Los Angeles International Airport", "Airport", "LAX"),
+            location("3", "East Los Angeles", "City", null),
+            location("4", "São Paulo", "City", "GRU"),
+            location("5", "Glasgow", "City", "GLA"),
+            location("7", "Las Vegas", "City", "LAS")));
+
+    @Test
+    void ranksByMatchTierThenCitiesThenShorterNames() {
+        assertEquals(List.of("1", "2", "3"), ids(index.search("los angeles", 10)));
+        assertEquals(List.of("1", "2", "3"), ids(index.search("Los Ang", 10)));
+        assertEquals(List.of("7", "5"), ids(index.search("las", 10)));
+    }
+
+    @Test
+    void airportCodeMatchesExactlyAndRanksFirst() {
+        assertEquals(List.of("2"), ids(index.search("LAX", 10)));
+        assertEquals("5", ids(index.search("gla", 10)).get(0));
+    }
+
+    @Test
+    void foldsAccentsCaseAndPunctuation() {
+        assertEquals(List.of("4"), ids(index.search("sao paulo", 10)));
+        assertEquals(List.of("4"), ids(index.search("SÃO-PAULO", 10)));
+    }
+
+    @Test
+    void shortQueriesMatchWordPrefixes() {
+        assertEquals(List.of("7", "1", "2", "3"), ids(index.search("l", 10)));
+        assertEquals(List.of("5"), ids(index.search("gl", 10)));
+        assertTrue(index.search("ng", 10).isEmpty());
+    }
+
+    @Test
+    void limitsResultsAndRejectsNonMatches() {
+        assertEquals(List.of("1", "3"), ids(index.search("angeles", 2)));
+        assertTrue(index.search("atlantis", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    void fuzzyTierToleratesTyposAfterExactMatches() {
+        assertEquals(List.of("1", "2", "3"), ids(index.search("Los Angles", 10)));
+        assertEquals(List.of("5"), ids(index.search("glasgwo", 10)));
+        assertEquals(List.of("4"), ids(index.search("sao palo", 10)));
+        assertEquals(List.of("1", "3", "2"), ids(index.search("angelse", 10)));
+        assertTrue(index.search("glsa", 10).isEmpty());
+        assertTrue(index.search("Los Angles", 10, 0).isEmpty());
+    }
+
+    @Test
+    void prefixDistanceCountsTranspositionsAsOneEdit() {
+        assertEquals(1, LocationIndex.prefixDistance("glasgwo", "glasgow", 0, 2));
+        assertEquals(0, LocationIndex.prefixDistance("glas", "glasgow", 0, 2));
+        assertEquals(1, LocationIndex.prefixDistance("angels", "los angeles", 4, 2));
+        assertEquals(3, LocationIndex.prefixDistance("vegas", "glasgow", 0, 2));
+        assertEquals(3, LocationIndex.fuzzyScore("east los angeles", "los angles", 1));
+    }
+
+    @Test
+    void normalizeCollapsesSeparators() {
+        assertEquals("st louis", LocationIndex.normalize(" St. Louis "));
+        assertEquals("zurich", LocationIndex.normalize("Zürich"));
+    }
+
+    @Test
+    void mappedGazetteerFileServesSameResultsAndFields(@TempDir Path dir) throws IOException {
+        Location heathrow = location("9", "Heathrow Airport", "Airport", "LHR");
+        heathrow.setState("");
+        heathrow.setCountry("UK");
+        heathrow.setLatitude(51.47);
+        heathrow.setLongitude(-0.4543);
+        Path file = dir.resolve("locations.gaz");
+        LocationIndexWriter.write(List.of(heathrow, location("1", "Los Angeles", "City", null)), file);
+
+        LocationIndex mapped = LocationIndex.open(file);
+        assertEquals(2, mapped.size());
+        Location found = mapped.search("lhr", 10).get(0);
+        assertEquals("Heathrow Airport", found.getName());
+        assertEquals("Airport", found.getType());
+        assertEquals("", found.getState());
+        assertEquals("UK", found.getCountry());
+        assertEquals(51.47, found.getLatitude());
+        assertEquals(-0.4543, found.getLongitude());
+        assertNull(mapped.search("los", 10).get(0).getAirportCode());
+    }
+
+    @Test
+    void converterReadsCsvWithQuotedFields() throws IOException {
+        List<Location> locations = GazetteerConverter.readCsv(new BufferedReader(new StringReader(
+                "name,id,type,country,latitude,longitude,airportCode\n"
+                        + "\"Washington, D.C.\",1,City,USA,38.9,-77.03,\n")), "test.csv");
+        assertEquals(1, locations.size());
+        assertEquals("Washington, D.C.", locations.get(0).getName());
+        assertEquals(-77.03, locations.get(0).getLongitude());
+        assertNull(locations.get(0).getAirportCode());
+    }
+
+    @Test
+    void converterRejectsRowsWithInvalidCoordinates() {
+        IOException error = assertThrows(IOException.class, () -> GazetteerConverter.readCsv(
+                new BufferedReader(new StringReader("id,name,latitude,longitude\n"
+                        + "1,Berlin,52.52,13.4\n"
+                        + "2,Nowhere,,13.4\n")), "places.csv"));
+        assertEquals("places.csv:3: invalid latitude ''", error.getMessage());
+        assertThrows(IOException.class, () -> GazetteerConverter.readCsv(new BufferedReader(new StringReader(
+                "id,name,latitude,longitude\n1,Far,12,200\n")), "places.csv"));
+    }
+
+    @Test
+    void nearestMatchesBruteForceAndWrapsAroundTheAntimeridian() {
+        Random random = new Random(42);
+        List<Location> points = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Location point = location(String.valueOf(i), "Point " + i, "City", null);
+            point.setLatitude(random.nextDouble() * 180 - 90);
+            point.setLongitude(random.nextDouble() * 360 - 180);
+            points.add(point);
+        }
+        LocationIndex spatial = LocationIndex.build(points);
+        for (int query = 0; query < 50; query++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            List<String> expected = points.stream()
+                    .sorted(Comparator.comparingDouble(p -> distance(p, latitude, longitude)))
+                    .limit(7)
+                    .map(Location::getId)
+                    .collect(Collectors.toList());
+            assertEquals(expected, ids(spatial.nearest(latitude, longitude, 7)));
+        }
+
+        Location suva = location("fj", "Suva", "City", null);
+        suva.setLatitude(-18.14);
+        suva.setLongitude(178.44);
+        Location apia = location("ws", "Apia", "City", null);
+        apia.setLatitude(-13.83);
+        apia.setLongitude(-171.76);
+        Location sydney = location("au", "Sydney", "City", null);
+        sydney.setLatitude(-33.87);
+        sydney.setLongitude(151.21);
+        assertEquals(List.of("ws", "fj"), ids(LocationIndex.build(List.of(sydney, suva, apia)).nearest(-15, -175, 2)));
+    }
+
+    private static double distance(Location location, double latitude, double longitude) {
+        double[] a = new double[3];
+        double[] b = new double[3];
+        LocationIndex.unitVector(location.getLatitude(), location.getLongitude(), a, 0);
+        LocationIndex.unitVector(latitude, longitude, b, 0);
+        return (a[0] - b[0]) * (a[0] - b[0]) + (a[1] - b[1]) * (a[1] - b[1]) + (a[2] - b[2]) * (a[2] - b[2]);
+    }
+
+    private static List<String> ids(List<Location> locations) {
+        return locations.stream().map(Location::getId).collect(Collectors.toList());
+    }
+
+    static Location location(String id, String name, String type, String airportCode) {
+        Location location = new Location();
+        location.setId(id);
+        location.setName(name);
+        location.setType(type);
+        location.setAirportCode(airportCode);
+        return location;
+    }
+}
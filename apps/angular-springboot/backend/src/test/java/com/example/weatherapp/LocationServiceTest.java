@@ -3,9 +3,12 @@ package com.example.weatherapp;
 import com.example.weatherapp.model.Location;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.core.io.ClassPathResource;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,4 +42,70 @@ class LocationServiceTest {
         List<Location> results = locationService.search("Atlantis");
         assertTrue(results.isEmpty());
     }
+
+    @Test
+    void search_shouldRankExactMatchFirstAndHonourLimit() {
+        List<Location> results = locationService.search("a", 2);
+        assertEquals(2, results.size());
+        assertEquals("Boston", locationService.search("boston").get(0).getName());
+    }
+
+    @Test
+    void nearest_shouldReturnClosestLocationsFirst() {
+        List<Location> results = locationService.nearest(40.75, -73.99, 2);
+        assertEquals(2, results.size());
+        assertEquals("New York City", results.get(0).getName());
+    }
+
+    @Test
+    void findById_shouldResolveKnownIdsOnly() {
+        assertEquals("Los Angeles International Airport", locationService.findById("3").getName());
+        assertNull(locationService.findById("missing"));
+    }
+
+    @Test
+    void reload_shouldPublishChangedDatasetOnceItIsStable(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("locations.json");
+        Files.writeString(file, "[" + city("1", "Springfield") + "]");
+        locationService.setGazetteerPath(file.toString());
+        locationService.loadLocations();
+        LocationIndex before = locationService.dataset();
+        assertEquals("Springfield", locationService.search("springfield").get(0).getName());
+        assertFalse(locationService.reloadIfChanged());
+
+        Files.writeString(file, "[" + city("1", "Springfield") + "," + city("2", "Shelbyville") + "]");
+        assertFalse(locationService.reloadIfChanged());
+        assertSame(before, locationService.dataset());
+        assertTrue(locationService.reloadIfChanged());
+        assertEquals("Shelbyville", locationService.search("shelbyville").get(0).getName());
+        assertNotEquals(before.checksum(), locationService.dataset().checksum());
+    }
+
+    @Test
+    void reload_shouldKeepServingPreviousDatasetWhenNewOneIsBroken(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("locations.json");
+        Files.writeString(file, "[" + city("1", "Springfield") + "]");
+        locationService.setGazetteerPath(file.toString());
+        locationService.loadLocations();
+
+        Files.writeString(file, "[{\"id\": ");
+        assertFalse(locationService.reloadIfChanged());
+        assertFalse(locationService.reloadIfChanged());
+        assertEquals(1, locationService.search("springfield").size());
+    }
+
+    @Test
+    void load_shouldMergeLocationFilesOfDirectory(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("a.json"), "[" + city("1", "Springfield") + "]");
+        Files.writeString(dir.resolve("b.csv"), "id,name,type,latitude,longitude\n2,Shelbyville,city,39.8,-84.1\n");
+        Files.writeString(dir.resolve("README.txt"), "ignored");
+        locationService.setGazetteerPath(dir.toString());
+        locationService.loadLocations();
+        assertEquals(2, locationService.dataset().size());
+        assertEquals("2", locationService.findById("2").getId());
+    }
+
+    private static String city(String id, String name) {
+        return "{\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"type\":\"city\",\"latitude\":39.8,\"longitude\":-89.6}";
+    }
 }
@@ -0,0 +1,47 @@
+package com.example.weatherapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeImageHintsTest {
+    private static final String HINTS = "META-INF/native-image/com.example/weather-app-backend/";
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+    @Test
+    void everyModelClassIsRegisteredForReflection() throws IOException {
+        Set<String> models = new TreeSet<>();
+        for (Resource resource : resolver.getResources("classpath*:com/example/weatherapp/model/*.class")) {
+            models.add("com.example.weatherapp.model." + resource.getFilename().replace(".class", ""));
+        }
+        Set<String> registered = new TreeSet<>();
+        for (JsonNode entry : read("reflect-config.json")) {
+            registered.add(entry.get("name").asText());
+        }
+        assertFalse(models.isEmpty());
+        assertEquals(models, registered);
+    }
+
+    @Test
+    void bundledLocationsAreIncludedAsResource() throws IOException {
+        Pattern pattern = Pattern.compile(read("resource-config.json").at("/resources/includes/0/pattern").asText());
+        assertTrue(pattern.matcher("data/locations.json").matches());
+    }
+
+    private JsonNode read(String name) throws IOException {
+        try (InputStream in = resolver.getResource("classpath:" + HINTS + name).getInputStream()) {
+            return mapper.readTree(in);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.DailyForecast;
+import com.example.weatherapp.model.HourlyForecastResponse;
+import com.example.weatherapp.model.WeeklyForecastResponse;
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenMeteoParserTest {
+    private final OpenMeteoParser parser = new OpenMeteoParser();
+
+    @Test
+    void parseWeeklyReadsRecordedResponse() throws IOException {
+        try (InputStream body = new ClassPathResource("openmeteo/weekly.json").getInputStream()) {
+            WeeklyForecastResponse response = parser.parseWeekly(body).toResponse(TemperatureUnit.CELSIUS);
+            assertEquals(52.52, response.getLatitude());
+            assertEquals(13.419998, response.getLongitude());
+            assertEquals("celsius", response.getUnits());
+            assertEquals(7, response.getForecast().size());
+            DailyForecast day = response.getForecast().get(3);
+            assertEquals("2025-06-30", day.getDay());
+            assertEquals(95, day.getWeatherCode());
+            assertEquals(31.2, day.getTemperature().getMax());
+            assertEquals(19.4, day.getTemperature().getMin());
+            assertEquals(68, day.getPrecipitationChance());
+        }
+    }
+
+    @Test
+    void parseWeeklyHandlesColumnOrderNullsAndMissingColumns() throws IOException {
+        String json = "{\"daily\":{\"temperature_2m_max\":[20,null],\"time\":[\"2025-01-01\",\"2025-01-02\"],"
+                + "\"temperature_2m_min\":[10,11],\"weathercode\":[0,1],\"unknown\":{\"nested\":[1,2]}}}";
+        WeeklyForecastResponse response = parser.parseWeekly(stream(json)).toResponse(TemperatureUnit.CELSIUS);
+        assertEquals(2, response.getForecast().size());
+        assertEquals(20, response.getForecast().get(0).getTemperature().getMax());
+        assertEquals(0, response.getForecast().get(1).getTemperature().getMax());
+        assertEquals(0, response.getForecast().get(1).getPrecipitationChance());
+        assertEquals("2025-01-02", response.getForecast().get(1).getDay());
+    }
+
+    @Test
+    void parseWeeklyBatchReadsOneForecastPerCoordinate() throws IOException {
+        String json = "[{\"latitude\":52.52,\"daily\":{\"time\":[\"2025-01-01\"],\"temperature_2m_max\":[3]}},"
+                + "{\"latitude\":48.86,\"daily\":{\"time\":[\"2025-01-01\",\"2025-01-02\"],\"temperature_2m_max\":[8,9]}}]";
+        List<DailySeries> series = parser.parseWeeklyBatch(stream(json));
+        assertEquals(2, series.size());
+        assertEquals(52.52, series.get(0).getLatitude());
+        assertEquals(2, series.get(1).size());
+        assertEquals(9, series.get(1).toResponse(TemperatureUnit.CELSIUS).getForecast().get(1).getTemperature().getMax());
+
+        assertEquals(1, parser.parseWeeklyBatch(stream("{\"daily\":{\"time\":[\"2025-01-01\"]}}")).size());
+        assertThrows(JsonParseException.class, () -> parser.parseWeeklyBatch(stream("42")));
+    }
+
+    @Test
+    void parseHourlyKeepsAllRowsAndResponsesTakeTheRequestedNumber() throws IOException {
+        HourlySeries series;
+        try (InputStream body = new ClassPathResource("openmeteo/hourly.json").getInputStream()) {
+            series = parser.parseHourly(body);
+        }
+        assertTrue(series.size() >= 24);
+        assertEquals(series.time(0).plusHours(5), series.time(5));
+        assertEquals(63, series.weatherCode(16));
+        HourlyForecastResponse response = series.toResponse(TemperatureUnit.CELSIUS, 12);
+        assertEquals(12, response.getHourly().size());
+        assertEquals(11, response.getHourly().get(11).getHour());
+        HourlyForecastResponse all = series.toResponse(TemperatureUnit.CELSIUS, 24);
+        assertEquals(24, all.getHourly().size());
+        assertEquals(1.1, all.getHourly().get(16).getPrecipitationChance());
+    }
+
+    @Test
+    void parseHourlyKeepsLocalTimesAcrossADaylightSavingChange() throws IOException {
+        // Europe/Berlin springs forward at 02:00 on 2025-03-30: the local axis skips an hour
+        String json = "{\"hourly\":{\"time\":[\"2025-03-30T00:00\",\"2025-03-30T01:00\",\"2025-03-30T03:00\","
+                + "\"2025-03-30T04:00\"],\"temperature_2m\":[1,2,3,4]}}";
+        HourlySeries series = parser.parseHourly(stream(json));
+        assertEquals(LocalDateTime.of(2025, 3, 30, 1, 0), series.time(1));
+        assertEquals(LocalDateTime.of(2025, 3, 30, 3, 0), series.time(2));
+        assertEquals(LocalDateTime.of(2025, 3, 30, 4, 0), series.time(3));
+
+        // The explicit time column survives the disk store's binary form
+        ByteBuffer encoded = ByteBuffer.allocate(series.encodedBytes());
+        series.writeTo(encoded);
+        assertFalse(encoded.hasRemaining());
+        HourlySeries decoded = HourlySeries.readFrom(encoded.flip());
+        assertEquals(LocalDateTime.of(2025, 3, 30, 4, 0), decoded.time(3));
+        assertEquals(4, decoded.temperature(3, TemperatureUnit.CELSIUS));
+    }
+
+    @Test
+    void responsesConvertCachedCelsiusWithoutFloatNoise() throws IOException {
+        String json = "{\"daily\":{\"time\":[\"2025-01-01\"],\"temperature_2m_max\":[21.3],"
+                + "\"temperature_2m_min\":[-3.7],\"precipitation_probability_max\":[15]}}";
+        DailySeries series = parser.parseWeekly(stream(json));
+        DailyForecast celsius = series.toResponse(TemperatureUnit.CELSIUS).getForecast().get(0);
+        assertEquals(21.3, celsius.getTemperature().getMax());
+        assertEquals(-3.7, celsius.getTemperature().getMin());
+        WeeklyForecastResponse fahrenheit = series.toResponse(TemperatureUnit.FAHRENHEIT);
+        assertEquals("fahrenheit", fahrenheit.getUnits());
+        assertEquals(70.3, fahrenheit.getForecast().get(0).getTemperature().getMax());
+        assertEquals(25.3, fahrenheit.getForecast().get(0).getTemperature().getMin());
+        assertEquals(15, fahrenheit.getForecast().get(0).getPrecipitationChance());
+    }
+
+    @Test
+    void rejectsNonObjectBody() {
+        assertThrows(JsonParseException.class, () -> parser.parseWeekly(stream("not json")));
+        assertThrows(JsonParseException.class, () -> parser.parseHourly(stream("[]")));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
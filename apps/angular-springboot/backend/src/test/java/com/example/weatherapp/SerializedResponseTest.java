@@ -0,0 +1,61 @@
+package com.example.weatherapp;
+
+import com.example.weatherapp.model.Location;
+import com.example.weatherapp.model.LocationsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerializedResponseTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void negotiatesGzipFromAcceptEncoding() {
+        assertTrue(SerializedResponse.acceptsGzip("gzip, deflate, br"));
+        assertTrue(SerializedResponse.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(SerializedResponse.acceptsGzip("*"));
+        assertFalse(SerializedResponse.acceptsGzip(null));
+        assertFalse(SerializedResponse.acceptsGzip("identity"));
+        assertFalse(SerializedResponse.acceptsGzip("gzip;q=0, *"));
+        assertFalse(SerializedResponse.acceptsGzip("*;q=0"));
+    }
+
+    @Test
+    void servesSharedBodiesForEachEncoding() throws Exception {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Location location = new Location();
+            location.setId("id-" + i);
+            location.setName("Springfield " + i);
+            location.setType("City");
+            locations.add(location);
+        }
+        LocationsResponse body = new LocationsResponse(locations);
+        SerializedResponse response = SerializedResponse.of(mapper, body);
+
+        ResponseEntity<byte[]> identity = response.body(ResponseEntity.ok(), null, "identity");
+        ResponseEntity<byte[]> gzip = response.body(ResponseEntity.ok(), null, "gzip");
+        assertArrayEquals(mapper.writeValueAsBytes(body), identity.getBody());
+        assertNull(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, gzip.getHeaders().getFirst(HttpHeaders.VARY));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getBody()))) {
+            assertArrayEquals(identity.getBody(), in.readAllBytes());
+        }
+        assertSame(gzip.getBody(), response.body(ResponseEntity.ok(), null, "gzip").getBody());
+
+        assertEquals("\"v1\"", response.body(ResponseEntity.ok(), "\"v1\"", null).getHeaders().getETag());
+        assertEquals("\"v1-gzip\"", response.body(ResponseEntity.ok(), "\"v1\"", "gzip").getHeaders().getETag());
+
+        SerializedResponse small = SerializedResponse.of(mapper, new LocationsResponse(locations.subList(0, 1)));
+        assertNull(small.body(ResponseEntity.ok(), null, "gzip").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+}
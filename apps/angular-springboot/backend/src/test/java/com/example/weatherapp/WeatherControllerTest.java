@@ -3,16 +3,22 @@ package com.example.weatherapp;
 import com.example.weatherapp.model.WeeklyForecastResponse;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureMetrics
 class WeatherControllerTest {
     @Autowired
     private MockMvc mockMvc;
@@ -29,4 +35,65 @@ class WeatherControllerTest {
         mockMvc.perform(get("/api/v1/forecast/week"))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void hourlyForecastEndpointValidatesHorizonAndFields() throws Exception {
+        mockMvc.perform(get("/api/v1/forecast/hourly?lat=52.52&lon=13.405&hours=385"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("hours must be between 1 and 384"));
+        mockMvc.perform(get("/api/v1/forecast/hourly?lat=52.52&lon=13.405&fields=time,humidity")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void subscribeEndpointValidatesBeforeOpeningAStream() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/forecast/subscribe?latitude=52.52&forecast=daily")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.error").value("Missing or invalid coordinates."));
+    }
+
+    @Test
+    void weeklyBatchEndpointValidatesAndReportsPerLocationErrors() throws Exception {
+        mockMvc.perform(post("/api/v1/forecast/week/batch").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/forecast/week/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"locations\":[{\"id\":\"no-such-id\"},{\"latitude\":1}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.forecasts[0].error").value("Unknown location id."))
+                .andExpect(jsonPath("$.forecasts[1].error").value("Missing or invalid coordinates."));
+    }
+
+    @Test
+    void prometheusEndpointExposesApplicationMeters() throws Exception {
+        mockMvc.perform(post("/api/v1/forecast/week/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"locations\":[{\"id\":\"no-such-id\"}]}"));
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("weather_http_in_flight")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"forecasts\"")))
+                .andExpect(content().string(containsString("resilience4j_circuitbreaker_state")));
+    }
+
+    @Test
+    void locationSearchIsConditional() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/v1/locations/search?query=berlin"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=3600, public"))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/v1/locations/search?query=berlin").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        // The precondition is checked before searching, for either encoding's ETag
+        mockMvc.perform(get("/api/v1/locations/search?query=nowhere-at-all")
+                        .header("If-None-Match", SerializedResponse.gzipETag(etag)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", SerializedResponse.gzipETag(etag)));
+    }
 }
@@ -2,15 +2,34 @@ package com.example.weatherapp;
 
 import com.example.weatherapp.model.WeeklyForecastResponse;
 import com.example.weatherapp.model.DailyForecast;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -36,7 +55,7 @@ class WeatherServiceTest {
     void getWeeklyForecastSuccess() {
         // Mock Open-Meteo API response with 7 days
         String mockApiResponse = "{\"daily\":{\"time\":[\"2025-06-27\",\"2025-06-28\",\"2025-06-29\",\"2025-06-30\",\"2025-07-01\",\"2025-07-02\",\"2025-07-03\"],\"temperature_2m_max\":[25,26,27,28,29,30,31],\"temperature_2m_min\":[15,16,17,18,19,20,21],\"weathercode\":[1,2,3,4,5,6,7]}}";
-        when(restTemplate.getForObject(anyString(), eq(String.class))).thenReturn(mockApiResponse);
+        stubUpstream(mockApiResponse);
 
         WeeklyForecastResponse response = weatherService.getWeeklyForecast(52.52, 13.405, "C");
         assertNotNull(response);
@@ -46,4 +65,184 @@ class WeatherServiceTest {
         assertEquals(25, day.getTemperature().getMax());
         assertEquals(15, day.getTemperature().getMin());
     }
+
+    @Test
+    void getWeeklyForecastServesRepeatedAndNearbyRequestsFromCache() {
+        String mockApiResponse = "{\"daily\":{\"time\":[\"2025-06-27\"],\"temperature_2m_max\":[25],\"temperature_2m_min\":[15],\"weathercode\":[1]}}";
+        stubUpstream(mockApiResponse);
+
+        WeeklyForecastResponse first = weatherService.getWeeklyForecast(52.52, 13.406, "C");
+        WeeklyForecastResponse second = weatherService.getWeeklyForecast(52.5201, 13.4052, "metric");
+        assertEquals(25, second.getForecast().get(0).getTemperature().getMax());
+        verifyUpstreamCalls(1);
+
+        // Other units are converted from the cached Celsius forecast
+        WeeklyForecastResponse fahrenheit = weatherService.getWeeklyForecast(52.52, 13.405, "F");
+        assertEquals("fahrenheit", fahrenheit.getUnits());
+        assertEquals(77, fahrenheit.getForecast().get(0).getTemperature().getMax());
+        assertEquals(59, fahrenheit.getForecast().get(0).getTemperature().getMin());
+        assertEquals("celsius", first.getUnits());
+        verifyUpstreamCalls(1);
+    }
+
+    @Test
+    void upstreamCallsOverTheRateLimitAreNotMade() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        weatherService.setMetrics(new WeatherMetrics(registry));
+        weatherService.setUpstreamRateLimit(new TokenBucket(0.001, 1));
+        stubUpstream("{\"daily\":{\"time\":[\"2025-06-27\"],\"temperature_2m_max\":[25],\"temperature_2m_min\":[15],\"weathercode\":[1]}}");
+
+        assertNotNull(weatherService.getWeeklyForecast(52.52, 13.405, "C"));
+        assertNull(weatherService.getWeeklyForecast(48.86, 2.35, "C"));
+        verifyUpstreamCalls(1);
+        assertEquals(1, registry.get("weather.upstream.errors").tags("kind", "weekly", "type", "rate_limited").counter().count());
+    }
+
+    @Test
+    void getWeeklyForecastDoesNotCacheFailedParse() {
+        stubUpstream("not json");
+
+        assertNull(weatherService.getWeeklyForecast(52.52, 13.405, "C"));
+        assertNull(weatherService.getWeeklyForecast(52.52, 13.405, "C"));
+        verifyUpstreamCalls(2);
+    }
+
+    @Test
+    void malformedValuesFailTheCallLikeAnyOtherUpstreamError() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        weatherService.setMetrics(new WeatherMetrics(registry));
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("test");
+        weatherService.setCircuitBreaker(circuitBreaker);
+        stubUpstream("{\"daily\":{\"time\":[\"2025-13-45\"],\"temperature_2m_max\":[25]}}");
+
+        assertNull(weatherService.getWeeklyForecast(52.52, 13.405, "C"));
+        assertNull(weatherService.getWeeklyForecast(52.52, 13.405, "C"));
+        verifyUpstreamCalls(2);
+        assertEquals(2, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+        assertEquals(2, registry.get("weather.upstream.errors").tags("kind", "weekly", "type", "parse_error").counter().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void upstreamCallsAreTimedAndErrorsCountedByType() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        weatherService.setMetrics(new WeatherMetrics(registry));
+        stubUpstream("not json");
+        weatherService.getWeeklyForecast(52.52, 13.405, "C");
+        stubUpstream("{\"hourly\":{\"time\":[\"2025-06-27T00:00\"],\"temperature_2m\":[12]}}");
+        weatherService.getHourlyForecast(52.52, 13.405);
+        when(restTemplate.execute(any(URI.class), eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class)))
+                .thenThrow(new ResourceAccessException("timeout", new SocketTimeoutException("Read timed out")));
+        weatherService.getWeeklyForecast(10, 10, "C");
+
+        assertEquals(1, registry.get("weather.upstream.errors").tags("kind", "weekly", "type", "parse_error").counter().count());
+        assertEquals(1, registry.get("weather.upstream.errors").tags("kind", "weekly", "type", "timeout").counter().count());
+        assertEquals(1, registry.get("weather.upstream.requests").tags("kind", "hourly", "outcome", "success").timer().count());
+        assertEquals(2, registry.get("weather.upstream.parse").tags("kind", "weekly").timer().count() + registry.get("weather.upstream.parse").tags("kind", "hourly").timer().count());
+        assertEquals(0, registry.get("weather.upstream.in.flight").gauge().value());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getWeeklyForecastsCoalescesCoordinatesIntoOneUpstreamCall() {
+        stubUpstream("[{\"daily\":{\"time\":[\"2025-06-27\"],\"temperature_2m_max\":[25]}},"
+                + "{\"daily\":{\"time\":[\"2025-06-27\"],\"temperature_2m_max\":[18]}}]");
+
+        List<WeeklyForecastResponse> forecasts = weatherService.getWeeklyForecasts(
+                new double[] {52.52, 48.8566, 52.5201}, new double[] {13.406, 2.3522, 13.4052}, "C");
+        assertEquals(3, forecasts.size());
+        assertEquals(25, forecasts.get(0).getForecast().get(0).getTemperature().getMax());
+        assertEquals(18, forecasts.get(1).getForecast().get(0).getTemperature().getMax());
+        assertEquals(25, forecasts.get(2).getForecast().get(0).getTemperature().getMax());
+        ArgumentCaptor<URI> uri = ArgumentCaptor.forClass(URI.class);
+        verify(restTemplate, times(1)).execute(uri.capture(), eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class));
+        assertTrue(uri.getValue().getQuery().contains("latitude=52.52,48.86"), uri.getValue().getQuery());
+        assertFalse(uri.getValue().getQuery().contains("temperature_unit"), uri.getValue().getQuery());
+
+        // Cached cells are served without another upstream call, also through the single-location path
+        assertEquals(18, weatherService.getWeeklyForecast(48.8566, 2.3522, "C").getForecast().get(0).getTemperature().getMax());
+        verifyUpstreamCalls(1);
+    }
+
+    @Test
+    void getWeeklyForecastsSplitsMissesIntoChunksAndReportsFailedChunks() {
+        weatherService.setBatchSize(2);
+        stubUpstream("[{\"daily\":{\"time\":[\"2025-06-27\"]}},{\"daily\":{\"time\":[\"2025-06-27\"]}}]");
+
+        List<WeeklyForecastResponse> forecasts = weatherService.getWeeklyForecasts(
+                new double[] {10, 20, 30}, new double[] {10, 20, 30}, "C");
+        verifyUpstreamCalls(2);
+        assertNotNull(forecasts.get(0));
+        assertNotNull(forecasts.get(1));
+        // The last chunk asked for one location but got two forecasts back, so it is not trusted or cached
+        assertNull(forecasts.get(2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void upstreamFailuresOpenCircuitBreakerAndStopCallingUpstream() {
+        weatherService.setCircuitBreaker(CircuitBreaker.of("test", CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .build()));
+        when(restTemplate.execute(any(URI.class), eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class)))
+                .thenThrow(new ResourceAccessException("timeout"));
+
+        assertNull(weatherService.getWeeklyForecast(52.52, 13.405, "C"));
+        assertNull(weatherService.getHourlyForecast(52.52, 13.405));
+        assertNull(weatherService.getWeeklyForecast(52.52, 13.405, "C"));
+        verifyUpstreamCalls(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getWeeklyForecastAsyncUsesNonBlockingClientAndCache() {
+        HttpClient httpClient = mock(HttpClient.class);
+        HttpResponse<byte[]> httpResponse = mock(HttpResponse.class);
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body()).thenReturn("{\"daily\":{\"time\":[\"2025-06-27\"],\"temperature_2m_max\":[25],\"temperature_2m_min\":[15],\"weathercode\":[1]}}".getBytes(StandardCharsets.UTF_8));
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(httpResponse));
+        weatherService.setHttpClient(httpClient);
+
+        WeeklyForecastResponse response = weatherService.getWeeklyForecastAsync(52.52, 13.406, "C").join();
+        assertEquals(1, response.getForecast().size());
+        assertEquals(1, weatherService.getWeeklyForecastAsync(52.52, 13.406, "F").join().getForecast().size());
+        verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getHourlyForecastAsyncCompletesWithNullOnUpstreamError() {
+        HttpClient httpClient = mock(HttpClient.class);
+        HttpResponse<byte[]> httpResponse = mock(HttpResponse.class);
+        when(httpResponse.statusCode()).thenReturn(500);
+        when(httpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(httpResponse));
+        weatherService.setHttpClient(httpClient);
+
+        assertNull(weatherService.getHourlyForecastAsync(52.52, 13.406).join());
+    }
+
+    /** Answers upstream calls by streaming the given body through the caller's response extractor. */
+    @SuppressWarnings("unchecked")
+    private void stubUpstream(String body) {
+        when(restTemplate.execute(any(URI.class), eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class)))
+                .thenAnswer(invocation -> {
+                    ClientHttpResponse response = mock(ClientHttpResponse.class);
+                    when(response.getBody()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+                    try {
+                        return invocation.<ResponseExtractor<?>>getArgument(3).extractData(response);
+                    } catch (IOException e) {
+                        // RestTemplate reports extractor I/O errors this way
+                        throw new ResourceAccessException(e.getMessage(), e);
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void verifyUpstreamCalls(int times) {
+        verify(restTemplate, times(times)).execute(any(URI.class), eq(HttpMethod.GET), any(RequestCallback.class), any(ResponseExtractor.class));
+    }
 }
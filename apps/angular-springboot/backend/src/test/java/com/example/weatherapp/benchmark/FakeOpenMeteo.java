@@ -0,0 +1,192 @@
+package com.example.weatherapp.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Open-Meteo forecast API. It answers daily requests, including the comma-separated
+ * multi-location form, and hourly requests for the requested number of days. Values are derived from the coordinates,
+ * so repeated calls agree. Every response is delayed by a latency drawn from a log-normal distribution around the
+ * configured median, and a configured share of requests fails with 500, to exercise timeouts, the circuit breaker and
+ * stale serving.
+ */
+final class FakeOpenMeteo implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Duration medianLatency;
+    private final double latencySpread;
+    private final double errorRate;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * @param medianLatency median response delay
+     * @param latencySpread standard deviation of the log of the delay; 0 for a fixed delay, 0.5 gives a p99 of about
+     *                      3.2 times the median
+     * @param errorRate     share of requests answered with 500
+     */
+    FakeOpenMeteo(Duration medianLatency, double latencySpread, double errorRate) throws IOException {
+        this.medianLatency = medianLatency;
+        this.latencySpread = latencySpread;
+        this.errorRate = errorRate;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        // Delays sleep on the handler thread, so the pool must cover every call the application can have in flight
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-open-meteo");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/v1/forecast", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** The URL to configure as {@code weather.upstream.forecast-url}. */
+    String forecastUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/v1/forecast";
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delayNanos = (long) (medianLatency.toNanos() * Math.exp(latencySpread * random.nextGaussian()));
+            Thread.sleep(delayNanos / 1_000_000, (int) (delayNanos % 1_000_000));
+            if (random.nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                send(exchange, 500, "{\"error\":true,\"reason\":\"Injected failure\"}");
+            } else {
+                send(exchange, 200, forecast(query(exchange.getRequestURI().getRawQuery())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String forecast(Map<String, String> query) {
+        String[] latitudes = query.getOrDefault("latitude", "0").split(",");
+        String[] longitudes = query.getOrDefault("longitude", "0").split(",");
+        if (query.containsKey("hourly")) {
+            int days = Integer.parseInt(query.getOrDefault("forecast_days", "7"));
+            return hourly(Double.parseDouble(latitudes[0]), Double.parseDouble(longitudes[0]), days);
+        }
+        if (latitudes.length == 1) {
+            return daily(Double.parseDouble(latitudes[0]), Double.parseDouble(longitudes[0]));
+        }
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < latitudes.length; i++) {
+            body.append(i == 0 ? "" : ",").append(daily(Double.parseDouble(latitudes[i]), Double.parseDouble(longitudes[i])));
+        }
+        return body.append(']').toString();
+    }
+
+    private static String daily(double latitude, double longitude) {
+        LocalDate start = LocalDate.now();
+        double base = baseTemperature(latitude);
+        StringBuilder time = new StringBuilder();
+        StringBuilder max = new StringBuilder();
+        StringBuilder min = new StringBuilder();
+        StringBuilder codes = new StringBuilder();
+        StringBuilder precipitation = new StringBuilder();
+        for (int day = 0; day < 7; day++) {
+            String separator = day == 0 ? "" : ",";
+            double swing = 3 * Math.sin(day + longitude);
+            time.append(separator).append('"').append(start.plusDays(day)).append('"');
+            max.append(separator).append(round(base + 5 + swing));
+            min.append(separator).append(round(base - 4 + swing));
+            codes.append(separator).append(weatherCode(latitude, longitude, day));
+            precipitation.append(separator).append((int) (50 + 50 * Math.sin(day * 1.7 + latitude)));
+        }
+        return "{\"latitude\":" + latitude + ",\"longitude\":" + longitude + ",\"timezone\":\"GMT\","
+                + "\"daily_units\":{\"temperature_2m_max\":\"°C\",\"temperature_2m_min\":\"°C\"},"
+                + "\"daily\":{\"time\":[" + time + "],\"weathercode\":[" + codes + "],\"temperature_2m_max\":[" + max
+                + "],\"temperature_2m_min\":[" + min + "],\"precipitation_probability_max\":[" + precipitation + "]}}";
+    }
+
+    private static String hourly(double latitude, double longitude, int days) {
+        LocalDateTime start = LocalDate.now().atStartOfDay();
+        double base = baseTemperature(latitude);
+        StringBuilder time = new StringBuilder();
+        StringBuilder temperature = new StringBuilder();
+        StringBuilder precipitation = new StringBuilder();
+        StringBuilder codes = new StringBuilder();
+        for (int hour = 0; hour < days * 24; hour++) {
+            String separator = hour == 0 ? "" : ",";
+            time.append(separator).append('"').append(start.plusHours(hour)).append('"');
+            temperature.append(separator).append(round(base + 6 * Math.sin((hour % 24 - 9) * Math.PI / 12)));
+            precipitation.append(separator).append(round(Math.max(0, 2 * Math.sin(hour * 0.3 + longitude))));
+            codes.append(separator).append(weatherCode(latitude, longitude, hour / 24));
+        }
+        return "{\"latitude\":" + latitude + ",\"longitude\":" + longitude + ",\"timezone\":\"GMT\","
+                + "\"hourly_units\":{\"temperature_2m\":\"°C\"},\"hourly\":{\"time\":[" + time + "],\"temperature_2m\":["
+                + temperature + "],\"precipitation\":[" + precipitation + "],\"weathercode\":[" + codes + "]}}";
+    }
+
+    private static double baseTemperature(double latitude) {
+        return 28 - 0.5 * Math.abs(latitude);
+    }
+
+    private static int weatherCode(double latitude, double longitude, int day) {
+        int[] codes = {0, 1, 2, 3, 45, 61, 63, 71, 80, 95};
+        return codes[Math.floorMod((int) (latitude * 7 + longitude * 3) + day, codes.length)];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(pair.substring(0, equals),
+                            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
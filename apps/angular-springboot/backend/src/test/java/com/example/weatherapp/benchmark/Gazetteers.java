@@ -0,0 +1,56 @@
+package com.example.weatherapp.benchmark;
+
+import com.example.weatherapp.model.Location;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic gazetteers for benchmarks. Names are built from common place-name syllables, so prefixes
+ * such as "san" or "new" match a large share of entries, as they do in real gazetteers.
+ */
+final class Gazetteers {
+    private static final String[] SYLLABLES = {
+            "san", "ta", "mar", "ber", "lin", "ton", "ville", "por", "new", "york", "la", "go", "ri", "o", "de",
+            "ja", "nei", "ro", "ham", "burg", "ston", "field", "wood", "land", "ca", "mi", "ami", "jo", "se", "ki"
+    };
+    private static final String[] COUNTRIES = {"USA", "UK", "Germany", "Brazil", "Japan", "Spain", "India", "Canada"};
+
+    private Gazetteers() {}
+
+    static List<Location> generate(int size) {
+        Random random = new Random(size);
+        List<Location> locations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder name = new StringBuilder();
+            int words = 1 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    name.append(' ');
+                }
+                int start = name.length();
+                int syllables = 2 + random.nextInt(3);
+                for (int s = 0; s < syllables; s++) {
+                    name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                }
+                name.setCharAt(start, Character.toUpperCase(name.charAt(start)));
+            }
+            Location location = new Location();
+            location.setId(String.valueOf(i));
+            location.setName(name.toString());
+            boolean airport = random.nextInt(20) == 0;
+            location.setType(airport ? "Airport" : "City");
+            location.setState("");
+            location.setCountry(COUNTRIES[random.nextInt(COUNTRIES.length)]);
+            location.setLatitude(Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)));
+            location.setLongitude(random.nextDouble() * 360 - 180);
+            if (airport) {
+                location.setAirportCode("" + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26))
+                        + (char) ('A' + random.nextInt(26)));
+            }
+            locations.add(location);
+        }
+        return locations;
+    }
+}
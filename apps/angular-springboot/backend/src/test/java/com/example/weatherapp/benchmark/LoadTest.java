@@ -0,0 +1,437 @@
+package com.example.weatherapp.benchmark;
+
+import com.example.weatherapp.WeatherAppApplication;
+import com.example.weatherapp.model.Location;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load test of the forecast and location search endpoints against {@link FakeOpenMeteo}. Requests are
+ * sent at a fixed arrival rate whatever the response times, and latency is measured from the moment each request was
+ * due, so a stalled server shows up in the tail instead of silently lowering the load. Locations are drawn from a
+ * synthetic gazetteer with Zipf-distributed popularity, which gives the forecast cache and the search response cache
+ * the skewed key distribution of real traffic.
+ * <p>
+ * After a warm-up, the offered rate is raised step by step. A step is sustainable when the achieved rate is within 5%
+ * of the offered one, the error rate is within {@code max-errors} and p99 is within {@code slo-p99}; the run stops at
+ * the first step that is not. Results are printed per step and endpoint and, with {@code output}, written as JSON.
+ * <p>
+ * Usage: {@code mvn -Ploadtest -DskipTests verify -Dloadtest.args="rates=100,200,400 step=PT20S"}. Arguments are
+ * {@code name=value} pairs (defaults in {@link Options}); {@code --property=value} arguments are passed on to the
+ * application, e.g. {@code --weather.execution-mode=async}. With {@code target=http://host:port} an application started
+ * separately is tested instead; point its {@code weather.upstream.forecast-url} at the printed stand-in URL. The
+ * embedded application shares the JVM and CPUs with the load generator, so compare runs made on the same machine.
+ */
+public class LoadTest {
+    private static final String[] ENDPOINTS = {"week", "hourly", "search"};
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        List<Location> locations = Gazetteers.generate(options.locations);
+        Zipf popularity = new Zipf(locations.size(), options.zipf);
+        try (FakeOpenMeteo upstream = new FakeOpenMeteo(options.upstreamLatency, options.upstreamSpread,
+                options.upstreamErrors)) {
+            System.out.println("Open-Meteo stand-in: " + upstream.forecastUrl());
+            ConfigurableApplicationContext application = null;
+            String target = options.target;
+            if (target == null) {
+                application = start(options, upstream, locations);
+                target = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+            }
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            Traffic traffic = new Traffic(target, locations, popularity, options.mix, options.seed);
+            try {
+                run(options, client, traffic, upstream);
+            } finally {
+                if (application != null) {
+                    application.close();
+                }
+            }
+        }
+    }
+
+    private static void run(Options options, HttpClient client, Traffic traffic, FakeOpenMeteo upstream)
+            throws IOException {
+        System.out.printf("Warm-up: %s at %.0f/s%n", options.warmup, options.rates[0]);
+        step(options, client, traffic, options.rates[0], options.warmup);
+        System.out.printf("%10s %10s %7s %9s %9s %9s %9s %8s %9s%n", "offered/s", "achieved/s", "", "p50 ms",
+                "p99 ms", "p99.9 ms", "max ms", "errors", "upstream");
+        List<Map<String, Object>> results = new ArrayList<>();
+        double sustainable = 0;
+        for (double rate : options.rates) {
+            long upstreamBefore = upstream.requests();
+            Step step = step(options, client, traffic, rate, options.step);
+            long upstreamCalls = upstream.requests() - upstreamBefore;
+            boolean ok = step.achievedRate() >= 0.95 * rate && step.errorRate() <= options.maxErrors
+                    && step.total.getValueAtPercentile(99) <= options.sloP99.toNanos() / 1000;
+            print(String.format("%10.0f %10.0f", rate, step.achievedRate()), "all", step.total, step.errorRate(),
+                    String.format("%9d", upstreamCalls) + (ok ? "" : "  not sustainable"));
+            for (String endpoint : ENDPOINTS) {
+                Histogram histogram = step.latencies.get(endpoint);
+                if (histogram.getTotalCount() > 0) {
+                    print(String.format("%21s", ""), endpoint, histogram, step.errorRate(endpoint), "");
+                }
+            }
+            results.add(step.toMap(rate, upstreamCalls, ok));
+            if (!ok) {
+                break;
+            }
+            sustainable = rate;
+        }
+        System.out.printf("Max sustainable rate: %.0f requests/s (p99 <= %d ms, errors <= %.1f%%)%n", sustainable,
+                options.sloP99.toMillis(), options.maxErrors * 100);
+        if (options.output != null) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("maxSustainableRate", sustainable);
+            report.put("steps", results);
+            Files.createDirectories(options.output.toAbsolutePath().getParent());
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(options.output.toFile(), report);
+        }
+        if (sustainable < options.minRate) {
+            System.err.printf("Max sustainable rate %.0f/s is below the required %.0f/s%n", sustainable, options.minRate);
+            System.exit(1);
+        }
+    }
+
+    private static void print(String prefix, String endpoint, Histogram histogram, double errorRate, String suffix) {
+        System.out.printf("%s %7s %9.1f %9.1f %9.1f %9.1f %7.2f%%%s%n", prefix, endpoint,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0, errorRate * 100,
+                suffix);
+    }
+
+    /** Sends requests at {@code rate} per second for {@code duration}, then waits for the stragglers. */
+    private static Step step(Options options, HttpClient client, Traffic traffic, double rate, Duration duration) {
+        Step step = new Step(duration);
+        AtomicInteger outstanding = new AtomicInteger();
+        double intervalNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long due = start + (long) (i * intervalNanos);
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Traffic.Request request = traffic.next();
+            if (outstanding.get() >= options.maxOutstanding) {
+                // The server is not keeping up; count the request as failed rather than queueing without bound
+                step.record(request.endpoint, System.nanoTime() - due, false, false);
+                continue;
+            }
+            outstanding.incrementAndGet();
+            client.sendAsync(request.http, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long now = System.nanoTime();
+                boolean success = error == null && response.statusCode() < 400;
+                step.record(request.endpoint, now - due, success, now < end);
+                outstanding.decrementAndGet();
+            });
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return step;
+    }
+
+    private static ConfigurableApplicationContext start(Options options, FakeOpenMeteo upstream,
+                                                        List<Location> locations) throws IOException {
+        Path gazetteer = Files.createTempFile("loadtest-locations", ".json");
+        gazetteer.toFile().deleteOnExit();
+        new ObjectMapper().writeValue(gazetteer.toFile(), locations);
+        // Passed as command line arguments, which take precedence over application.properties
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("weather.upstream.forecast-url", upstream.forecastUrl());
+        properties.put("weather.locations.gazetteer", gazetteer.toString());
+        // All load comes from one client address, and the stand-in has no quota to protect
+        properties.put("weather.inbound.rate-limit.requests-per-second", "1000000");
+        properties.put("weather.inbound.rate-limit.burst", "1000000");
+        properties.put("weather.upstream.rate-limit.requests-per-second", "1000");
+        properties.put("weather.upstream.rate-limit.burst", "1000");
+        properties.put("weather.prewarm.enabled", "false");
+        properties.putAll(options.applicationProperties);
+        List<String> args = new ArrayList<>();
+        properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+        // Devtools, on the test classpath, would otherwise restart the application in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(WeatherAppApplication.class).run(args.toArray(new String[0]));
+    }
+
+    /** Request mix over the synthetic gazetteer, with location popularity following {@link Zipf}. */
+    static final class Traffic {
+        private final String target;
+        private final List<Location> locations;
+        private final Zipf popularity;
+        private final String[] endpoints;
+        private final Random random;
+
+        Traffic(String target, List<Location> locations, Zipf popularity, Map<String, Integer> mix, long seed) {
+            this.target = target;
+            this.locations = locations;
+            this.popularity = popularity;
+            this.random = new Random(seed);
+            List<String> weighted = new ArrayList<>();
+            mix.forEach((endpoint, weight) -> {
+                for (int i = 0; i < weight; i++) {
+                    weighted.add(endpoint);
+                }
+            });
+            this.endpoints = weighted.toArray(new String[0]);
+        }
+
+        /** Called from the dispatching thread only. */
+        Request next() {
+            String endpoint = endpoints[random.nextInt(endpoints.length)];
+            Location location = locations.get(popularity.sample(random));
+            String path;
+            switch (endpoint) {
+                case "week":
+                    path = "/api/v1/forecast/week?latitude=" + location.getLatitude() + "&longitude="
+                            + location.getLongitude();
+                    break;
+                case "hourly":
+                    path = "/api/v1/forecast/hourly?lat=" + location.getLatitude() + "&lon=" + location.getLongitude();
+                    break;
+                default:
+                    // What users type before picking a result: the first few letters of a popular name
+                    String name = location.getName();
+                    String prefix = name.substring(0, Math.min(name.length(), 3 + random.nextInt(4)));
+                    path = "/api/v1/locations/search?query=" + URLEncoder.encode(prefix, StandardCharsets.UTF_8);
+            }
+            HttpRequest http = HttpRequest.newBuilder(URI.create(target + path))
+                    .header("Accept-Encoding", "gzip")
+                    .timeout(Duration.ofSeconds(10))
+                    .build();
+            return new Request(endpoint, http);
+        }
+
+        static final class Request {
+            final String endpoint;
+            final HttpRequest http;
+
+            Request(String endpoint, HttpRequest http) {
+                this.endpoint = endpoint;
+                this.http = http;
+            }
+        }
+    }
+
+    /** Zipf distribution over ranks {@code 0..n-1}: rank {@code k} is drawn with weight {@code 1 / (k + 1)^s}. */
+    static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double s) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1 / Math.pow(k + 1, s);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        int sample(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+
+    /** Latencies in microseconds and outcomes of one step, overall and per endpoint. */
+    static final class Step {
+        final Duration duration;
+        final Histogram total = new ConcurrentHistogram(3);
+        final Map<String, Histogram> latencies = new LinkedHashMap<>();
+        final Map<String, AtomicLong> errors = new LinkedHashMap<>();
+        final AtomicLong completedInTime = new AtomicLong();
+
+        Step(Duration duration) {
+            this.duration = duration;
+            for (String endpoint : ENDPOINTS) {
+                latencies.put(endpoint, new ConcurrentHistogram(3));
+                errors.put(endpoint, new AtomicLong());
+            }
+        }
+
+        void record(String endpoint, long latencyNanos, boolean success, boolean inTime) {
+            long micros = Math.max(1, latencyNanos / 1000);
+            total.recordValue(micros);
+            latencies.get(endpoint).recordValue(micros);
+            if (!success) {
+                errors.get(endpoint).incrementAndGet();
+            } else if (inTime) {
+                completedInTime.incrementAndGet();
+            }
+        }
+
+        double achievedRate() {
+            return completedInTime.get() / (duration.toNanos() / 1e9);
+        }
+
+        double errorRate() {
+            long failed = errors.values().stream().mapToLong(AtomicLong::get).sum();
+            return total.getTotalCount() == 0 ? 0 : (double) failed / total.getTotalCount();
+        }
+
+        double errorRate(String endpoint) {
+            long count = latencies.get(endpoint).getTotalCount();
+            return count == 0 ? 0 : (double) errors.get(endpoint).get() / count;
+        }
+
+        Map<String, Object> toMap(double rate, long upstreamCalls, boolean sustainable) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("offeredRate", rate);
+            result.put("achievedRate", achievedRate());
+            result.put("sustainable", sustainable);
+            result.put("upstreamCalls", upstreamCalls);
+            result.put("all", summary(total, errorRate()));
+            for (String endpoint : ENDPOINTS) {
+                result.put(endpoint, summary(latencies.get(endpoint), errorRate(endpoint)));
+            }
+            return result;
+        }
+
+        private static Map<String, Object> summary(Histogram histogram, double errorRate) {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", histogram.getTotalCount());
+            summary.put("errorRate", errorRate);
+            summary.put("p50Ms", histogram.getValueAtPercentile(50) / 1000.0);
+            summary.put("p99Ms", histogram.getValueAtPercentile(99) / 1000.0);
+            summary.put("p999Ms", histogram.getValueAtPercentile(99.9) / 1000.0);
+            summary.put("maxMs", histogram.getMaxValue() / 1000.0);
+            return summary;
+        }
+    }
+
+    static final class Options {
+        String target;
+        int locations = 20_000;
+        double zipf = 1.0;
+        Map<String, Integer> mix = new LinkedHashMap<>(Map.of("week", 50, "hourly", 25, "search", 25));
+        double[] rates = {50, 100, 200, 400, 800, 1600};
+        Duration warmup = Duration.ofSeconds(20);
+        Duration step = Duration.ofSeconds(30);
+        Duration sloP99 = Duration.ofMillis(500);
+        double maxErrors = 0.01;
+        double minRate;
+        int maxOutstanding = 2_000;
+        Duration upstreamLatency = Duration.ofMillis(80);
+        double upstreamSpread = 0.5;
+        double upstreamErrors;
+        long seed = 42;
+        Path output;
+        final Map<String, String> applicationProperties = new LinkedHashMap<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected name=value: " + arg);
+                }
+                String name = arg.substring(0, equals);
+                String value = arg.substring(equals + 1);
+                if (name.startsWith("--")) {
+                    options.applicationProperties.put(name.substring(2), value);
+                } else {
+                    options.set(name, value);
+                }
+            }
+            return options;
+        }
+
+        private void set(String name, String value) {
+            switch (name) {
+                case "target":
+                    target = value;
+                    break;
+                case "locations":
+                    locations = Integer.parseInt(value);
+                    break;
+                case "zipf":
+                    zipf = Double.parseDouble(value);
+                    break;
+                case "mix":
+                    mix = new LinkedHashMap<>();
+                    for (String part : value.split(",")) {
+                        String[] weight = part.split(":");
+                        mix.put(weight[0], Integer.parseInt(weight[1]));
+                    }
+                    break;
+                case "rates":
+                    rates = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+                    break;
+                case "warmup":
+                    warmup = Duration.parse(value);
+                    break;
+                case "step":
+                    step = Duration.parse(value);
+                    break;
+                case "slo-p99":
+                    sloP99 = Duration.parse(value);
+                    break;
+                case "max-errors":
+                    maxErrors = Double.parseDouble(value);
+                    break;
+                case "min-rate":
+                    minRate = Double.parseDouble(value);
+                    break;
+                case "max-outstanding":
+                    maxOutstanding = Integer.parseInt(value);
+                    break;
+                case "upstream-latency":
+                    upstreamLatency = Duration.parse(value);
+                    break;
+                case "upstream-spread":
+                    upstreamSpread = Double.parseDouble(value);
+                    break;
+                case "upstream-errors":
+                    upstreamErrors = Double.parseDouble(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "output":
+                    output = value.isEmpty() ? null : Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+    }
+}
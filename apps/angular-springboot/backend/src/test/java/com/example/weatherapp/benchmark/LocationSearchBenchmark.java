@@ -0,0 +1,75 @@
+package com.example.weatherapp.benchmark;
+
+import com.example.weatherapp.LocationIndex;
+import com.example.weatherapp.model.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Location search and nearest-location latency over synthetic gazetteers of 1K, 100K and 1M entries. The queries
+ * cover a very common prefix, a short type-ahead prefix, a multi-word name, a substring, a misspelled name answered by
+ * the fuzzy tier and a miss.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LocationSearchBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Gazetteer {
+        @Param({"1000", "100000", "1000000"})
+        private int size;
+
+        private LocationIndex index;
+
+        @Setup(Level.Trial)
+        public void buildIndex() {
+            index = LocationIndex.build(Gazetteers.generate(size));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Query {
+        @Param({"san", "ne", "new york", "burgston", "burgsotn", "xyz"})
+        private String text;
+    }
+
+    @State(Scope.Thread)
+    public static class Coordinates {
+        private final double[] values = new double[2048];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            Random random = new Random(7);
+            for (int i = 0; i < values.length; i += 2) {
+                values[i] = random.nextDouble() * 180 - 90;
+                values[i + 1] = random.nextDouble() * 360 - 180;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Location> search(Gazetteer gazetteer, Query query) {
+        return gazetteer.index.search(query.text, 10);
+    }
+
+    @Benchmark
+    public List<Location> nearest(Gazetteer gazetteer, Coordinates coordinates) {
+        int i = coordinates.next;
+        coordinates.next = (i + 2) & (coordinates.values.length - 1);
+        return gazetteer.index.nearest(coordinates.values[i], coordinates.values[i + 1], 10);
+    }
+}
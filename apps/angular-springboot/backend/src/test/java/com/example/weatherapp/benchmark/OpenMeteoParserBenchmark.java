@@ -0,0 +1,109 @@
+package com.example.weatherapp.benchmark;
+
+import com.example.weatherapp.OpenMeteoParser;
+import com.example.weatherapp.TemperatureUnit;
+import com.example.weatherapp.model.DailyForecast;
+import com.example.weatherapp.model.HourlyForecastResponse;
+import com.example.weatherapp.model.WeeklyForecastResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming {@link OpenMeteoParser} against the previous String + JsonNode tree mapping, using recorded
+ * Open-Meteo payloads. Run with {@code -prof gc} to see the allocation difference per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OpenMeteoParserBenchmark {
+    private final OpenMeteoParser parser = new OpenMeteoParser();
+    private byte[] weekly;
+    private byte[] hourly;
+
+    @Setup
+    public void loadPayloads() throws IOException {
+        weekly = new ClassPathResource("openmeteo/weekly.json").getInputStream().readAllBytes();
+        hourly = new ClassPathResource("openmeteo/hourly.json").getInputStream().readAllBytes();
+    }
+
+    @Benchmark
+    public WeeklyForecastResponse weeklyStreaming() throws IOException {
+        return parser.parseWeekly(new ByteArrayInputStream(weekly)).toResponse(TemperatureUnit.CELSIUS);
+    }
+
+    @Benchmark
+    public WeeklyForecastResponse weeklyTree() throws IOException {
+        return treeWeekly(new String(weekly, StandardCharsets.UTF_8), "celsius");
+    }
+
+    @Benchmark
+    public HourlyForecastResponse hourlyStreaming() throws IOException {
+        return parser.parseHourly(new ByteArrayInputStream(hourly)).toResponse(TemperatureUnit.CELSIUS, 24);
+    }
+
+    @Benchmark
+    public Map<String, Object> hourlyTree() throws IOException {
+        return treeHourly(new String(hourly, StandardCharsets.UTF_8));
+    }
+
+    /** The tree-based weekly mapping WeatherService used before the streaming parser. */
+    static WeeklyForecastResponse treeWeekly(String response, String temperatureUnit) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode root = mapper.readTree(response);
+        WeeklyForecastResponse result = new WeeklyForecastResponse();
+        result.setLatitude(root.path("latitude").asDouble());
+        result.setLongitude(root.path("longitude").asDouble());
+        result.setUnits(temperatureUnit);
+        List<DailyForecast> forecast = new ArrayList<>();
+        JsonNode daily = root.path("daily");
+        for (int i = 0; i < daily.path("time").size(); i++) {
+            DailyForecast df = new DailyForecast();
+            df.setDay(daily.path("time").get(i).asText());
+            df.setWeatherCode(daily.path("weathercode").get(i).asInt());
+            DailyForecast.Temperature temp = new DailyForecast.Temperature();
+            temp.setMax(daily.path("temperature_2m_max").get(i).asDouble());
+            temp.setMin(daily.path("temperature_2m_min").get(i).asDouble());
+            df.setTemperature(temp);
+            if (daily.has("precipitation_probability_max")) {
+                df.setPrecipitationChance(daily.path("precipitation_probability_max").get(i).asDouble());
+            }
+            forecast.add(df);
+        }
+        result.setForecast(forecast);
+        return result;
+    }
+
+    /** The tree-based hourly mapping WeatherService used before the streaming parser. */
+    static Map<String, Object> treeHourly(String response) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode hourly = mapper.readTree(response).path("hourly");
+        List<Object> hourlyList = new ArrayList<>();
+        for (int i = 0; i < 24 && i < hourly.path("time").size(); i++) {
+            Map<String, Object> hourObj = new HashMap<>();
+            hourObj.put("hour", i);
+            hourObj.put("temperature", hourly.path("temperature_2m").get(i).asDouble());
+            hourObj.put("precipitationChance", hourly.path("precipitation").get(i).asDouble());
+            hourlyList.add(hourObj);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("hourly", hourlyList);
+        return result;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.weatherapp.benchmark;
+
+import com.example.weatherapp.LocationIndex;
+import com.example.weatherapp.OpenMeteoParser;
+import com.example.weatherapp.TemperatureUnit;
+import com.example.weatherapp.model.HourlyForecastResponse;
+import com.example.weatherapp.model.LocationsResponse;
+import com.example.weatherapp.model.WeeklyForecastResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response serialization cost of the controller payloads, using an ObjectMapper configured like Spring Boot's and
+ * forecasts parsed from the recorded Open-Meteo payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    private WeeklyForecastResponse weekly;
+    private HourlyForecastResponse hourly;
+    private LocationsResponse locations;
+
+    @Setup
+    public void loadPayloads() throws IOException {
+        OpenMeteoParser parser = new OpenMeteoParser();
+        weekly = parser.parseWeekly(new ClassPathResource("openmeteo/weekly.json").getInputStream())
+                .toResponse(TemperatureUnit.CELSIUS);
+        hourly = parser.parseHourly(new ClassPathResource("openmeteo/hourly.json").getInputStream())
+                .toResponse(TemperatureUnit.CELSIUS, 24);
+        locations = new LocationsResponse(LocationIndex.build(Gazetteers.generate(1000)).search("san", 10));
+    }
+
+    @Benchmark
+    public byte[] weeklyForecast() throws IOException {
+        return mapper.writeValueAsBytes(weekly);
+    }
+
+    @Benchmark
+    public byte[] hourlyForecast() throws IOException {
+        return mapper.writeValueAsBytes(hourly);
+    }
+
+    @Benchmark
+    public byte[] locationSearch() throws IOException {
+        return mapper.writeValueAsBytes(locations);
+    }
+}